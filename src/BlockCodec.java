@@ -0,0 +1,46 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses blocks of run records. A codec is given one whole block at
+ * a time, and decoding a block needs nothing from any other block, so a
+ * run can be read back one block at a time.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public interface BlockCodec {
+
+    /**
+     * the most bytes encoding a block of the given size can produce
+     * 
+     * @param rawBytes
+     *            the size of the block before encoding
+     * @return
+     *         the worst case encoded size
+     */
+    int maxEncodedBytes(int rawBytes);
+
+
+    /**
+     * encodes the remaining bytes of src into dst at its position
+     * 
+     * @param src
+     *            the block to encode, read to its limit
+     * @param dst
+     *            the buffer to write to, with at least
+     *            maxEncodedBytes(src.remaining()) bytes left
+     */
+    void encode(ByteBuffer src, ByteBuffer dst);
+
+
+    /**
+     * decodes the remaining bytes of src into dst at its position
+     * 
+     * @param src
+     *            an encoded block, read to its limit
+     * @param dst
+     *            the buffer to write the block to
+     */
+    void decode(ByteBuffer src, ByteBuffer dst);
+
+}
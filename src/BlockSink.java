@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+
+/**
+ * A destination for blocks of records written to part of a file.
+ * Records are put into buffer() and the block is written out with
+ * flush(), after which buffer() is ready for the next block.
+ * Closing a sink flushes the last partial block.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public interface BlockSink extends Closeable {
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    ByteBuffer buffer();
+
+
+    /**
+     * writes out the filled part of the buffer and starts a new block
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    void flush() throws IOException;
+
+
+    /**
+     * @return the file position the next record will be written to
+     */
+    long position();
+
+
+    /**
+     * @return the file position of the block being filled
+     */
+    default long blockPosition() {
+        return position() - buffer().position();
+    }
+
+
+    /**
+     * ends a run at the current position, so the next record starts
+     * the next run
+     * 
+     * @return the file position the next run starts at
+     * @throws IOException
+     *             if a file error occurs
+     */
+    default long endRun() throws IOException {
+        return position();
+    }
+
+
+    /**
+     * opens a sink writing to a channel from the given offset,
+     * writing behind the producer if the config asks for it
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param start
+     *            the offset of the first block
+     * @param config
+     *            the sort settings
+     * @return
+     *         the sink
+     */
+    static BlockSink open(FileChannel channel, long start, SortConfig config) {
+        if (config.getWriteBehindBlocks() > 1) {
+            return new WriteBehindBlockSink(channel, start, config
+                .getBlockBytes(), config.getWriteBehindBlocks());
+        }
+        return new FileBlockSink(channel, start, config.getBlockBytes());
+    }
+
+
+    /**
+     * opens a sink writing to a file from the given offset, with direct
+     * I/O if the config asks for it and the file system allows it
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param file
+     *            the path of the same file
+     * @param start
+     *            the offset of the first block
+     * @param config
+     *            the sort settings
+     * @return
+     *         the sink
+     * @throws IOException
+     *             if the file can not be opened again
+     */
+    static BlockSink open(
+        FileChannel channel,
+        Path file,
+        long start,
+        SortConfig config)
+        throws IOException {
+        if (config.isDirectIO()) {
+            try {
+                return new DirectBlockSink(channel, file, start, config
+                    .getBlockBytes());
+            }
+            catch (UnsupportedOperationException | FileSystemException e) {
+                // no direct I/O here, so write through the page cache
+            }
+        }
+        return open(channel, start, config);
+    }
+
+
+    /**
+     * opens a sink that encodes its blocks with a codec,
+     * or a plain one if the codec is null
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param start
+     *            the offset of the first block
+     * @param config
+     *            the sort settings
+     * @param codec
+     *            the run codec, or null to write records as they are
+     * @return
+     *         the sink
+     */
+    static BlockSink open(
+        FileChannel channel,
+        long start,
+        SortConfig config,
+        BlockCodec codec) {
+        if (codec == null) {
+            return open(channel, start, config);
+        }
+        return new PackedBlockSink(channel, start, config.getBlockBytes(),
+            codec);
+    }
+
+
+    /**
+     * opens a sink that encodes its blocks with a codec, or a plain one
+     * writing with direct I/O when the config asks for it if the codec
+     * is null
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param file
+     *            the path of the same file
+     * @param start
+     *            the offset of the first block
+     * @param config
+     *            the sort settings
+     * @param codec
+     *            the run codec, or null to write records as they are
+     * @return
+     *         the sink
+     * @throws IOException
+     *             if the file can not be opened again
+     */
+    static BlockSink open(
+        FileChannel channel,
+        Path file,
+        long start,
+        SortConfig config,
+        BlockCodec codec)
+        throws IOException {
+        if (codec == null) {
+            return open(channel, file, start, config);
+        }
+        return open(channel, start, config, codec);
+    }
+
+}
@@ -0,0 +1,241 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * test class for the BlockSink implementations
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class BlockSinkTest extends student.TestCase {
+
+    private File sinkFile;
+    private FileChannel channel;
+
+    /**
+     * opens an empty file to write to
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void setUp() throws IOException {
+        sinkFile = new File("blockSinkTest.bin");
+        sinkFile.delete();
+        channel = FileChannel.open(sinkFile.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+    }
+
+
+    /**
+     * writes numbered records through a sink and checks the file
+     * 
+     * @param sink
+     *            the sink to test, writing from offset 32
+     * @throws IOException
+     *             if a file error occurs
+     */
+    private void checkSink(BlockSink sink) throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            sink.buffer().putLong(i);
+            sink.buffer().putDouble(i);
+            if (!sink.buffer().hasRemaining()) {
+                sink.flush();
+            }
+        }
+        assertEquals(32 + 1000 * ByteFile.BYTES_PER_RECORD, sink.position());
+        sink.close();
+        channel.close();
+
+        RandomAccessFile raf = new RandomAccessFile(sinkFile, "r");
+        assertEquals(32 + 1000 * ByteFile.BYTES_PER_RECORD, raf.length());
+        raf.seek(32);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, raf.readLong());
+            assertEquals(i, raf.readDouble(), 0.0);
+        }
+        raf.close();
+        sinkFile.delete();
+    }
+
+
+    /**
+     * tests writing in line
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testFileBlockSink() throws IOException {
+        checkSink(new FileBlockSink(channel, 32, 64));
+    }
+
+
+    /**
+     * tests writing behind with a pool of two small blocks
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testWriteBehindBlockSink() throws IOException {
+        checkSink(new WriteBehindBlockSink(channel, 32, 64, 2));
+    }
+
+
+    /**
+     * tests writing with direct I/O in blocks smaller than the alignment
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testDirectBlockSink() throws IOException {
+        checkSink(new DirectBlockSink(channel, sinkFile.toPath(), 32, 64));
+    }
+
+
+    /**
+     * tests a stream sink read back by a stream source, their blocks
+     * coming from the shared pool and going back to it once closed
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testChannelBlockSink() throws IOException {
+        long allocated = 0;
+        for (int round = 0; round < 2; round++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BlockSink sink = new ChannelBlockSink(Channels.newChannel(bytes),
+                64);
+            for (int i = 0; i < 100; i++) {
+                sink.buffer().putLong(i);
+                sink.buffer().putDouble(i);
+                if (!sink.buffer().hasRemaining()) {
+                    sink.flush();
+                }
+            }
+            sink.close();
+            sink.close();
+            assertEquals(100 * ByteFile.BYTES_PER_RECORD, sink.position());
+
+            BlockSource source = new ChannelBlockSource(Channels.newChannel(
+                new ByteArrayInputStream(bytes.toByteArray())), 64,
+                ByteFile.BYTES_PER_RECORD);
+            int count = 0;
+            for (ByteBuffer bb = source.nextBlock(); bb != null;
+                bb = source.nextBlock()) {
+                while (bb.hasRemaining()) {
+                    assertEquals(count, bb.getLong());
+                    assertEquals(count, bb.getDouble(), 0.0);
+                    count++;
+                }
+            }
+            source.close();
+            source.close();
+            assertEquals(100, count);
+            if (round == 0) {
+                allocated = BufferPool.shared().getAllocated();
+            }
+        }
+        assertEquals(allocated, BufferPool.shared().getAllocated());
+    }
+
+
+    /**
+     * tests direct sinks writing neighbouring ranges that share aligned
+     * units at the same time
+     * 
+     * @throws Exception
+     *             if a file error occurs
+     */
+    public void testDirectRanges() throws Exception {
+        int[] starts = { 0, 300, 301, 5000, 5007 };
+        Thread[] writers = new Thread[starts.length - 1];
+        Exception[] failure = new Exception[1];
+        for (int t = 0; t < writers.length; t++) {
+            int first = starts[t];
+            int last = starts[t + 1];
+            writers[t] = new Thread(() -> {
+                try {
+                    BlockSink sink = new DirectBlockSink(channel, sinkFile
+                        .toPath(), (long)first * ByteFile.BYTES_PER_RECORD,
+                        ByteFile.BYTES_PER_BLOCK);
+                    for (int i = first; i < last; i++) {
+                        sink.buffer().putLong(i);
+                        sink.buffer().putDouble(i);
+                        if (!sink.buffer().hasRemaining()) {
+                            sink.flush();
+                        }
+                    }
+                    sink.close();
+                }
+                catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertNull(failure[0]);
+        channel.close();
+
+        RandomAccessFile raf = new RandomAccessFile(sinkFile, "r");
+        assertEquals(5007 * ByteFile.BYTES_PER_RECORD, raf.length());
+        for (int i = 0; i < 5007; i++) {
+            assertEquals(i, raf.readLong());
+            assertEquals(i, raf.readDouble(), 0.0);
+        }
+        raf.close();
+        sinkFile.delete();
+    }
+
+
+    /**
+     * tests that packed runs come back the same and end on frames
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPackedBlockSink() throws IOException {
+        PackedBlockSink sink = new PackedBlockSink(channel, 32,
+            ByteFile.BYTES_PER_BLOCK, new LzBlockCodec());
+        long[] ends = new long[2];
+        for (int run = 0; run < 2; run++) {
+            for (int i = 0; i < 1000; i++) {
+                sink.buffer().putLong(i % 7);
+                sink.buffer().putDouble(run * 1000 + i);
+                if (!sink.buffer().hasRemaining()) {
+                    sink.flush();
+                }
+            }
+            ends[run] = sink.endRun();
+        }
+        sink.close();
+        channel.close();
+        // sorted keys with few distinct ids shrink
+        assertTrue(ends[1] < 32 + 2000 * ByteFile.BYTES_PER_RECORD / 2);
+        assertEquals(ends[1], sinkFile.length());
+
+        BlockSource source = new PackedBlockSource(sinkFile.getName(),
+            ends[0], ends[1], ByteFile.BYTES_PER_BLOCK, new LzBlockCodec());
+        int count = 0;
+        for (ByteBuffer bb = source.nextBlock(); bb != null;
+            bb = source.nextBlock()) {
+            while (bb.hasRemaining()) {
+                assertEquals(count % 7, bb.getLong());
+                assertEquals(1000 + count, bb.getDouble(), 0.0);
+                count++;
+            }
+        }
+        source.close();
+        assertEquals(1000, count);
+        sinkFile.delete();
+    }
+
+}
@@ -0,0 +1,107 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystemException;
+
+/**
+ * A source of blocks of records read from part of a file.
+ * Each block is handed out as a buffer positioned at its first record
+ * and limited to whole records; a block is only valid until the next
+ * call to nextBlock().
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public interface BlockSource extends Closeable {
+
+    /**
+     * reads the next block of records
+     * 
+     * @return
+     *         a buffer holding the block, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs
+     */
+    ByteBuffer nextBlock() throws IOException;
+
+
+    /**
+     * opens a source over a range of a file using the I/O mode
+     * chosen in the config
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param config
+     *            the sort settings
+     * @return
+     *         the source
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    static BlockSource open(
+        String filename,
+        long start,
+        long end,
+        SortConfig config)
+        throws IOException {
+        int recordBytes = config.getRecordFormat().getWidth();
+        if (config.isDirectIO()) {
+            try {
+                return new DirectBlockSource(filename, start, end, config
+                    .getBlockBytes(), recordBytes);
+            }
+            catch (UnsupportedOperationException | FileSystemException e) {
+                // no direct I/O here, so read through the page cache
+            }
+        }
+        if (config.isMappedIO()) {
+            return new MappedBlockSource(filename, start, end,
+                MappedBlockSource.MAX_WINDOW, recordBytes);
+        }
+        if (config.getReadAheadBlocks() > 1) {
+            return new PrefetchBlockSource(filename, start, end, config
+                .getBlockBytes(), config.getReadAheadBlocks(), recordBytes);
+        }
+        return new FileBlockSource(filename, start, end, config
+            .getBlockBytes(), recordBytes);
+    }
+
+
+    /**
+     * opens a source over a range of blocks encoded with a codec,
+     * or a plain one if the codec is null
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param config
+     *            the sort settings
+     * @param codec
+     *            the run codec, or null if records are stored as they are
+     * @return
+     *         the source
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    static BlockSource open(
+        String filename,
+        long start,
+        long end,
+        SortConfig config,
+        BlockCodec codec)
+        throws IOException {
+        if (codec == null) {
+            return open(filename, start, end, config);
+        }
+        return new PackedBlockSource(filename, start, end, config
+            .getBlockBytes(), codec);
+    }
+
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * test class for the BlockSource implementations
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class BlockSourceTest extends student.TestCase {
+
+    /**
+     * sets up for tests
+     */
+    public void setUp() {
+        // nothing to set up.
+    }
+
+
+    /**
+     * tests that the channel and mapped sources read the same records
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSameRecords() throws IOException {
+        // an unaligned range, mapped through windows of 1000 bytes
+        BlockSource file = new FileBlockSource("sampleInput16.bin", 48, 20000,
+            ByteFile.BYTES_PER_BLOCK, ByteFile.BYTES_PER_RECORD);
+        BlockSource mapped = new MappedBlockSource("sampleInput16.bin", 48,
+            20000, 1000, ByteFile.BYTES_PER_RECORD);
+        ByteBuffer fileBB = file.nextBlock();
+        ByteBuffer mappedBB = mapped.nextBlock();
+        int count = 0;
+        while (fileBB != null) {
+            assertNotNull(mappedBB);
+            assertEquals(fileBB.getLong(), mappedBB.getLong());
+            assertEquals(fileBB.getDouble(), mappedBB.getDouble(), 0.0);
+            count++;
+            if (!fileBB.hasRemaining()) {
+                fileBB = file.nextBlock();
+            }
+            if (!mappedBB.hasRemaining()) {
+                mappedBB = mapped.nextBlock();
+            }
+        }
+        assertNull(mappedBB);
+        assertEquals((20000 - 48) / ByteFile.BYTES_PER_RECORD, count);
+        file.close();
+        mapped.close();
+    }
+
+
+    /**
+     * tests that reading ahead returns the same records in order, over
+     * the same channel as the other sources of the file
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPrefetch() throws IOException {
+        BlockSource file = new FileBlockSource("sampleInput16.bin", 16,
+            100000, ByteFile.BYTES_PER_BLOCK, ByteFile.BYTES_PER_RECORD);
+        long opened = ChannelCache.shared().getOpened();
+        BlockSource ahead = new PrefetchBlockSource("sampleInput16.bin", 16,
+            100000, 1024, 3, ByteFile.BYTES_PER_RECORD);
+        assertEquals(opened, ChannelCache.shared().getOpened());
+        ByteBuffer fileBB = file.nextBlock();
+        ByteBuffer aheadBB = ahead.nextBlock();
+        while (fileBB != null) {
+            assertNotNull(aheadBB);
+            assertEquals(fileBB.getLong(), aheadBB.getLong());
+            assertEquals(fileBB.getDouble(), aheadBB.getDouble(), 0.0);
+            if (!fileBB.hasRemaining()) {
+                fileBB = file.nextBlock();
+            }
+            if (!aheadBB.hasRemaining()) {
+                aheadBB = ahead.nextBlock();
+            }
+        }
+        assertNull(aheadBB);
+        file.close();
+        ahead.close();
+    }
+
+
+    /**
+     * tests that direct reads of an unaligned range, in blocks smaller
+     * than the alignment, return the same records in order
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testDirect() throws IOException {
+        BlockSource file = new FileBlockSource("sampleInput16.bin", 48,
+            100000, ByteFile.BYTES_PER_BLOCK, ByteFile.BYTES_PER_RECORD);
+        BlockSource direct = new DirectBlockSource("sampleInput16.bin", 48,
+            100000, 1000, ByteFile.BYTES_PER_RECORD);
+        ByteBuffer fileBB = file.nextBlock();
+        ByteBuffer directBB = direct.nextBlock();
+        int count = 0;
+        while (fileBB != null) {
+            assertNotNull(directBB);
+            assertEquals(fileBB.getLong(), directBB.getLong());
+            assertEquals(fileBB.getDouble(), directBB.getDouble(), 0.0);
+            count++;
+            if (!fileBB.hasRemaining()) {
+                fileBB = file.nextBlock();
+            }
+            if (!directBB.hasRemaining()) {
+                directBB = direct.nextBlock();
+            }
+        }
+        assertNull(directBB);
+        assertEquals((100000 - 48) / ByteFile.BYTES_PER_RECORD, count);
+        file.close();
+        direct.close();
+
+        direct = new DirectBlockSource("sampleInput16.bin", 131072 - 32,
+            Long.MAX_VALUE, ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_RECORD);
+        assertEquals(32, direct.nextBlock().remaining());
+        assertNull(direct.nextBlock());
+        direct.close();
+    }
+
+
+    /**
+     * tests that a range past the end of the file stops at the file's end
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPastEnd() throws IOException {
+        BlockSource file = new FileBlockSource("sampleInput16.bin", 131072
+            - 32, Long.MAX_VALUE, ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_RECORD);
+        assertEquals(32, file.nextBlock().remaining());
+        assertNull(file.nextBlock());
+        file.close();
+    }
+
+}
@@ -0,0 +1,137 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct block buffers kept for reuse, so the sources and sinks of a
+ * merge with thousands of runs do not each allocate their own. Buffers
+ * are direct, so channels read and write them without copying through
+ * a temporary buffer, and their memory starts on a page, so direct I/O
+ * can use them as they are. Up to a limit of bytes is kept free; past
+ * that, released buffers are left to the garbage collector. A sort
+ * clears the pool when it finishes, so the memory is only kept while
+ * sorts are running.
+ *
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class BufferPool {
+
+    /**
+     * the alignment of every buffer's memory
+     */
+    public static final int ALIGNMENT = 4096;
+
+    private static final BufferPool SHARED = new BufferPool(64 << 20);
+
+    private Map<Integer, ArrayDeque<ByteBuffer>> free = new HashMap<>();
+    private long maxFreeBytes;
+    private long freeBytes;
+    private long allocated;
+
+    /**
+     * constructs an empty pool
+     *
+     * @param maxFreeBytes
+     *            the most bytes of released buffers kept for reuse
+     */
+    public BufferPool(long maxFreeBytes) {
+        this.maxFreeBytes = maxFreeBytes;
+    }
+
+
+    /**
+     * @return the pool the block sources and sinks share
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+
+    /**
+     * takes a cleared buffer of the given capacity, reusing a released
+     * one when there is one
+     *
+     * @param bytes
+     *            the capacity
+     * @return
+     *         the buffer, big endian
+     */
+    public synchronized ByteBuffer acquire(int bytes) {
+        ArrayDeque<ByteBuffer> sized = free.get(bytes);
+        ByteBuffer buffer = sized == null ? null : sized.poll();
+        if (buffer == null) {
+            allocated++;
+            return allocate(bytes, ALIGNMENT);
+        }
+        freeBytes -= bytes;
+        buffer.clear();
+        return buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+
+    /**
+     * gives a buffer back for reuse. It must not be used afterwards.
+     *
+     * @param buffer
+     *            a direct buffer from acquire
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        int bytes = buffer.capacity();
+        if (!buffer.isDirect() || freeBytes + bytes > maxFreeBytes) {
+            return;
+        }
+        free.computeIfAbsent(bytes, b -> new ArrayDeque<>()).push(buffer);
+        freeBytes += bytes;
+    }
+
+
+    /**
+     * drops every buffer kept for reuse, leaving its memory to the
+     * garbage collector. Buffers still in use can be released afterwards.
+     */
+    public synchronized void clear() {
+        free.clear();
+        freeBytes = 0;
+    }
+
+
+    /**
+     * @return the number of buffers the pool has had to allocate
+     */
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+
+
+    /**
+     * @return the bytes of released buffers kept for reuse
+     */
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+
+    /**
+     * allocates a direct buffer whose memory starts on the alignment
+     *
+     * @param bytes
+     *            the capacity
+     * @param alignment
+     *            the alignment in bytes, a power of two
+     * @return
+     *         the buffer
+     */
+    static ByteBuffer allocate(int bytes, int alignment) {
+        // alignedSlice trims both ends to the alignment, so the memory
+        // has to hold whole units past the first aligned address
+        int units = (bytes + alignment - 1) / alignment + 1;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(units * alignment)
+            .alignedSlice(alignment);
+        buffer.limit(bytes);
+        return buffer.slice();
+    }
+
+}
@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+
+/**
+ * test class for BufferPool
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class BufferPoolTest extends student.TestCase {
+
+    /**
+     * tests that released buffers are handed out again, cleared
+     */
+    public void testReuse() {
+        BufferPool pool = new BufferPool(1 << 20);
+        ByteBuffer first = pool.acquire(8192);
+        assertTrue(first.isDirect());
+        assertEquals(8192, first.capacity());
+        first.putLong(7);
+        pool.release(first);
+        assertEquals(8192, pool.getFreeBytes());
+
+        ByteBuffer second = pool.acquire(8192);
+        assertTrue(first == second);
+        assertEquals(0, second.position());
+        assertEquals(8192, second.limit());
+        assertEquals(0, pool.getFreeBytes());
+        assertEquals(1, pool.getAllocated());
+
+        // a different size is a different buffer
+        ByteBuffer other = pool.acquire(100);
+        assertEquals(100, other.capacity());
+        assertEquals(2, pool.getAllocated());
+    }
+
+
+    /**
+     * tests that nothing past the limit, and no heap buffer, is kept
+     */
+    public void testLimit() {
+        BufferPool pool = new BufferPool(10000);
+        pool.release(pool.acquire(8192));
+        pool.release(pool.acquire(4096));
+        assertEquals(8192, pool.getFreeBytes());
+        pool.release(ByteBuffer.allocate(64));
+        assertEquals(8192, pool.getFreeBytes());
+    }
+
+
+    /**
+     * tests that clearing drops the free buffers but still takes back
+     * ones in use
+     */
+    public void testClear() {
+        BufferPool pool = new BufferPool(1 << 20);
+        ByteBuffer used = pool.acquire(4096);
+        pool.release(pool.acquire(8192));
+        pool.clear();
+        assertEquals(0, pool.getFreeBytes());
+        pool.acquire(8192);
+        assertEquals(3, pool.getAllocated());
+        pool.release(used);
+        assertEquals(4096, pool.getFreeBytes());
+    }
+
+
+    /**
+     * tests that buffers of any size hold all their bytes, at coarser
+     * alignments too
+     */
+    public void testAllocate() {
+        for (int bytes : new int[] { 0, 1, 64, 4095, 4097, 8244 }) {
+            ByteBuffer buffer = BufferPool.allocate(bytes, 4096);
+            assertEquals(bytes, buffer.capacity());
+            assertEquals(0, buffer.alignmentOffset(0, 8));
+        }
+        ByteBuffer coarse = BufferPool.allocate(100, 16384);
+        assertEquals(100, coarse.capacity());
+        assertEquals(0, coarse.alignmentOffset(0, 8));
+    }
+
+}
@@ -1,12 +1,28 @@
+import com.sun.nio.file.ExtendedOpenOption;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import student.TestableRandom;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Basic handling of binary data files.
@@ -39,7 +55,8 @@ public class ByteFile {
     final static int BYTES_PER_BLOCK = BYTES_PER_RECORD * RECORDS_PER_BLOCK;
 
     /**
-     * the number of blocks allowed in ram
+     * the default number of blocks allowed in ram,
+     * see SortConfig for a larger budget
      */
     final static int BLOCKS_IN_RAM = 8;
 
@@ -47,6 +64,9 @@ public class ByteFile {
     private List<Long> runs;
     private String filename;
     private int numBlocks;
+    private SortConfig config;
+    private boolean packed; // the runs were written with the run codec
+    private RunManifest manifest;
 
     /**
      * constructs a new ByteFile
@@ -58,9 +78,26 @@ public class ByteFile {
      *            the number of blocks
      */
     public ByteFile(String filename, int numBlocks) {
+        this(filename, numBlocks, new SortConfig());
+    }
+
+
+    /**
+     * constructs a new ByteFile that sorts within
+     * the given config's memory budget
+     * 
+     * @param filename
+     *            the name of the file
+     * @param numBlocks
+     *            the number of blocks
+     * @param config
+     *            the memory and I/O settings
+     */
+    public ByteFile(String filename, int numBlocks, SortConfig config) {
         runs = new ArrayList<>();
         this.filename = filename;
         this.numBlocks = numBlocks;
+        this.config = config;
     }
 
 
@@ -76,6 +113,22 @@ public class ByteFile {
     }
 
 
+    /**
+     * @return the description of the current runs, null before any
+     */
+    public RunManifest getManifest() {
+        return manifest;
+    }
+
+
+    /**
+     * @return where the run manifest is saved between passes
+     */
+    public File manifestFile() {
+        return new File(filename + ".manifest");
+    }
+
+
     /**
      * calls writeRandomRecords
      * 
@@ -134,34 +187,28 @@ public class ByteFile {
      *             if a file error occurs
      */
     public boolean isSorted() throws IOException {
-        byte[] basicBuffer = new byte[BYTES_PER_BLOCK];
-        ByteBuffer bb = ByteBuffer.wrap(basicBuffer);
-
-        File theFile = new File(filename);
-        RandomAccessFile raf = new RandomAccessFile(theFile, "r");
-        raf.seek(0);
-        double prevRecKey = Double.NEGATIVE_INFINITY;
-
-        for (int block = 0; block < numBlocks; block++) {
-            raf.read(basicBuffer);
+        BlockSource source = BlockSource.open(filename, 0, Long.MAX_VALUE,
+            config);
+        RecordFormat format = config.getRecordFormat();
+        // a copy of the last record read, since its block may be reused
+        ByteBuffer prev = ByteBuffer.allocate(format.getWidth());
+        boolean first = true;
+
+        ByteBuffer bb;
+        while ((bb = source.nextBlock()) != null) {
             // ^^^ the slow, costly operation!!! Good thing we use buffer
 
-            bb.position(0); // goes to byte position zero in ByteBuffer
-            for (int rec = 0; rec < RECORDS_PER_BLOCK; rec++) {
-                long recID = bb.getLong();
-                // ^^^ reading the recID is important to advance the byteBuffer
-                // position, but it is not used in the sort order
-                double recKey = bb.getDouble();
-                if (recKey < prevRecKey) {
-                    raf.close();
+            while (bb.hasRemaining()) {
+                if (!first && format.compare(bb, bb.position(), prev, 0) < 0) {
+                    source.close();
                     return false;
                 }
-                else {
-                    prevRecKey = recKey;
-                }
+                prev.put(0, bb, bb.position(), format.getWidth());
+                bb.position(bb.position() + format.getWidth());
+                first = false;
             }
         }
-        raf.close(); // be sure to close file
+        source.close(); // be sure to close file
         return true;
     }
 
@@ -247,124 +294,636 @@ public class ByteFile {
     
 
     /**
-     * External Sort replacement selection algorithm
+     * sorts the file. A file whose records, keys and indexes fit in the
+     * memory budget is radix sorted in memory and written once; anything
+     * bigger is split into runs and merged. A restartable config keeps
+     * the input untouched until the sorted file replaces it, see
+     * sortWithCheckpoints. The shared buffer pool is cleared afterwards.
      * 
      * @throws IOException
      *             if a file error occurs
      */
-    public void replacementSelection() throws IOException {
-        runs.clear();
-        File selectOutput = new File("selectionOutput.bin");
-        selectOutput.delete();
-        RandomAccessFile outFile = new RandomAccessFile(selectOutput, "rw");
-        // buffers
-        byte[] inBuff = new byte[BYTES_PER_BLOCK];
-        byte[] outBuff = new byte[BYTES_PER_BLOCK];
-        byte[] block = new byte[BYTES_PER_BLOCK];
-        ByteBuffer inbb = ByteBuffer.wrap(inBuff);
-        ByteBuffer outbb = ByteBuffer.wrap(outBuff);
-        ByteBuffer bb = ByteBuffer.wrap(block);
-        File inFile = new File(filename);
-        RandomAccessFile raf = new RandomAccessFile(inFile, "r");
-        raf.seek(0);
+    public void sort() throws IOException {
+        long records = new File(filename).length() / config.getRecordFormat()
+            .getWidth();
+        try {
+            if (records <= config.getRadixRecords()) {
+                sortInMemory();
+            }
+            else if (config.isRestartable()) {
+                sortWithCheckpoints();
+            }
+            else {
+                replacementSelection();
+                merge(planMerge());
+            }
+        }
+        finally {
+            BufferPool.shared().clear();
+        }
+    }
 
-        // fill in the heap array
-        Record[] heapArr = new Record[RECORDS_PER_BLOCK * Math.min(
-            this.numBlocks, BLOCKS_IN_RAM)];
-        int arrIndex = 0;
-        for (int k = 0; k < BLOCKS_IN_RAM; k++) {
-            raf.read(block);
-            bb.position(0);
-            for (int i = 0; i < RECORDS_PER_BLOCK; i++) {
-                heapArr[arrIndex] = new Record(bb.getLong(), bb.getDouble());
-                arrIndex++;
+
+    /**
+     * sorts the file so that a sort stopped at any point can be run again
+     * and carry on from its last finished pass. Runs and merge passes go
+     * to work files next to the input, and each one is synced to disk
+     * before the manifest recording it is. The input is only replaced,
+     * by a single rename, once the sorted file is complete and synced.
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void sortWithCheckpoints() throws IOException {
+        String[] work = { filename + ".runs0", filename + ".runs1" };
+        File saved = manifestFile();
+        manifest = null;
+        if (saved.exists()) {
+            manifest = RunManifest.read(saved);
+            String runFile = manifest.getRunFile();
+            if (!runFile.equals(work[0]) && !runFile.equals(work[1])) {
+                // left by another kind of sort, so not a checkpoint
+                manifest = null;
+            }
+            else if (!new File(runFile).exists()) {
+                // stopped after its only run was renamed over the input,
+                // so all that is left is the clean up
+                commitCheckpoints(null, saved, work);
+                return;
+            }
+            else if (!isComplete(manifest)) {
+                manifest = null;
             }
         }
+        if (manifest == null) {
+            // form the runs without touching the input
+            File runFile = new File(work[0]);
+            manifest = new RunManifest(work[0], config.getRunCodec() != null,
+                formRuns(runFile));
+            manifest.write(saved);
+        }
 
-        // create the heap from the array
-        MinHeap<Record> heap = new MinHeap<Record>(heapArr, RECORDS_PER_BLOCK
-            * BLOCKS_IN_RAM, RECORDS_PER_BLOCK * BLOCKS_IN_RAM);
+        // merge between the work files, recording each finished pass
+        BlockCodec codec = config.getRunCodec();
+        while (manifest.getRuns().size() > config.getFanIn()) {
+            String inputFile = manifest.getRunFile();
+            String outputFile = inputFile.equals(work[0]) ? work[1] : work[0];
+            manifest = mergePass(manifest.boundaries(), inputFile,
+                manifest.isEncoded() ? codec : null, outputFile, codec,
+                config);
+            manifest.write(saved);
+        }
 
-        // start process
-        inbb.position(0);
-        outbb.position(0);
+        // a single plain run is already the output, otherwise merge once
+        File sorted = new File(manifest.getRunFile());
+        if (manifest.getRuns().size() > 1 || manifest.isEncoded()) {
+            sorted = new File(filename + ".sorted");
+            mergePass(manifest.boundaries(), manifest.getRunFile(), manifest
+                .isEncoded() ? codec : null, sorted.getPath(), null, config);
+        }
+        commitCheckpoints(sorted, saved, work);
+    }
 
-        // read to input buff while there is still data
-        while (raf.read(inBuff) != -1) {
 
-            inbb.position(0);
+    /**
+     * checks that a checkpoint's run file holds exactly the runs it
+     * records, written with the codec this sort uses
+     */
+    private boolean isComplete(RunManifest saved) {
+        List<Long> bounds = saved.boundaries();
+        return saved.isEncoded() == (config.getRunCodec() != null)
+            && new File(saved.getRunFile()).length() == bounds.get(bounds
+                .size() - 1);
+    }
+
+
+    /**
+     * replaces the input with the sorted file, then deletes the manifest
+     * and work files a rerun would otherwise pick up. The manifest goes
+     * first, and a rerun that finds it naming a run file that is gone
+     * comes back here with nothing to move.
+     * 
+     * @param sorted
+     *            the sorted file, or null if it already replaced the input
+     * @param saved
+     *            the manifest file
+     * @param work
+     *            the work files
+     * @throws IOException
+     *             if a file error occurs
+     */
+    private void commitCheckpoints(File sorted, File saved, String[] work)
+        throws IOException {
+        File output = new File(filename);
+        if (sorted != null) {
+            moveFile(sorted, output);
+            syncDirectory(output);
+        }
+        runs.clear();
+        runs.add((long)0);
+        runs.add(output.length());
+        packed = false;
+        saved.delete();
+        new File(work[0]).delete();
+        new File(work[1]).delete();
+        new File(filename + ".sorted").delete();
+    }
 
-            // continue while there is still more data in inbuff
-            while (inbb.position() < inBuff.length - 1) {
 
-                // remove min and add new val, while setting rem to removed
-                // Record
-                Record rem = heap.modify(0, new Record(inbb.getLong(), inbb
-                    .getDouble()));
+    /**
+     * sorts the file up to its last merge and returns that merge as an
+     * iterator, so the sorted records are never written out and read
+     * back. Earlier passes each write a scratch file and delete the one
+     * they read; the runs are left in the last one, which the iterator
+     * deletes when it is closed. This file is emptied by the first pass.
+     * 
+     * @return
+     *         the records in key order, to be closed once read
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public SortedRecordIterator sortedRecords() throws IOException {
+        replacementSelection();
+        // an iterator can not be resumed, so its runs are not saved
+        manifestFile().delete();
+        List<Long> current = runs;
+        String inputFile = filename;
+        BlockCodec codec = config.getRunCodec();
+        ScratchSpace space = new ScratchSpace(config);
+        while (current.size() - 1 > config.getFanIn()) {
+            String outputFile = space.create("pass", current.get(current
+                .size() - 1)).getPath();
+            current = mergePass(current, inputFile, codec, outputFile, codec,
+                config).boundaries();
+            if (inputFile.equals(filename)) {
+                truncate(new File(filename));
+            }
+            else {
+                space.release(new File(inputFile));
+            }
+            inputFile = outputFile;
+        }
+        SortedRecordIterator sorted = new SortedRecordIterator(current,
+            inputFile, config, codec);
+        if (!inputFile.equals(filename)) {
+            sorted.deleteOnClose(new File(inputFile));
+        }
+        return sorted;
+    }
 
-                // putting data in output buffer
-                outbb.putLong(rem.getRecID());
-                outbb.putDouble(rem.getKey());
 
-                // when the new min needs to be inactive
-                if (heap.getMin().getKey() < rem.getKey() && outbb
-                    .position() < outBuff.length - 1) {
-                    // swap to end, decrement heap size, then update
-                    heap.swap(0, heap.heapSize() - 1);
-                    heap.setHeapSize(heap.heapSize() - 1);
-                    heap.update(0);
+    /**
+     * loads the whole file, radix sorts it on all the config's threads,
+     * and writes it back as a single run
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void sortInMemory() throws IOException {
+        runs.clear();
+        File inFile = new File(filename);
+        RecordFormat format = config.getRecordFormat();
+        int records = (int)(inFile.length() / format.getWidth());
+
+        // read every record into one buffer
+        ByteBuffer data = ByteBuffer.allocate(records * format.getWidth());
+        FileChannel in = FileChannel.open(inFile.toPath(),
+            StandardOpenOption.READ);
+        while (data.hasRemaining() && in.read(data, data.position()) >= 0) {
+            continue;
+        }
+        in.close();
+
+        File sortOutput = siblingFile("sort");
+        FileChannel out = FileChannel.open(sortOutput.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        BlockSink sink = BlockSink.open(out, sortOutput.toPath(), 0, config);
+        sortChunk(data, records, new long[records], new int[records], format,
+            config.getThreads(), sink);
+        sink.close();
+        if (config.isRestartable()) {
+            out.force(false);
+        }
+        out.close();
+        runs.add((long)0);
+        runs.add(sink.position());
+
+        // move results back over the input
+        moveFile(sortOutput, inFile);
+    }
+
+
+    /**
+     * External Sort replacement selection algorithm.
+     * With more than one thread in the config the file is split into
+     * equal ranges of whole records, and each range forms its own runs
+     * with its share of the memory budget. A range's runs are written to
+     * the same offsets the range came from, so the run lists just join.
+     * Runs written with a codec are packed one after another instead,
+     * so they are formed by a single thread. The runs are described in
+     * the manifest, which is saved next to the file.
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void replacementSelection() throws IOException {
+        runs.clear();
+        File selectOutput = siblingFile("selection");
+        List<RunInfo> infos = formRuns(selectOutput);
+        packed = config.getRunCodec() != null;
+        manifest = new RunManifest(filename, packed, infos);
+        runs.addAll(manifest.boundaries());
+
+        // move results back over the input
+        moveFile(selectOutput, new File(filename));
+        manifest.write(manifestFile(), config.isRestartable());
+    }
+
+
+    /**
+     * forms the runs of the file in another file, as described for
+     * replacementSelection
+     * 
+     * @param output
+     *            the file to write the runs to, replaced if it exists
+     * @return
+     *         the runs in file order
+     * @throws IOException
+     *             if a file error occurs
+     */
+    private List<RunInfo> formRuns(File output) throws IOException {
+        output.delete();
+        FileChannel out = FileChannel.open(output.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        File inFile = new File(filename);
+        RecordFormat format = config.getRecordFormat();
+        int width = format.getWidth();
+        long records = inFile.length() / width;
+
+        // only split when every range gets at least a block
+        BlockCodec codec = config.getRunCodec();
+        int threads = (int)Math.max(1, Math.min(config.getThreads(), records
+            / config.getRecordsPerBlock()));
+        if (codec != null) {
+            threads = 1;
+        }
+        int heapRecords = Math.max(1, (config.isRadixRuns()
+            ? config.getRadixRecords()
+            : config.getHeapRecords()) / threads);
+        List<Callable<List<RunInfo>>> ranges = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long start = records * t / threads * width;
+            long end = records * (t + 1) / threads * width;
+            ranges.add(() -> {
+                BlockSource source = BlockSource.open(filename, start, end,
+                    config);
+                IndexingBlockSink sink = new IndexingBlockSink(BlockSink.open(
+                    out, output.toPath(), start, config, codec), format, config
+                        .isBlockIndex());
+                int rangeHeap = (int)Math.min(heapRecords, (end - start)
+                    / width);
+                if (config.isRadixRuns()) {
+                    sortRuns(source, sink, rangeHeap, format);
                 }
-                // if out buffer is full, then write to file and clear
-                if (outbb.position() >= outBuff.length - 1) {
-
-                    // add current file pos to runs
-                    // then write to outfile
-                    runs.add(outFile.getFilePointer());
-                    outFile.write(outBuff);
-                    outbb.position(0);
-                    bb.clear();
-
-                    // reactivate heap after writing the outbuffer to file
-                    heap.setHeapSize(RECORDS_PER_BLOCK * BLOCKS_IN_RAM);
-                    heap.buildHeap();
+                else {
+                    selectRuns(source, sink, rangeHeap, format, config
+                        .isStable());
                 }
+                sink.close();
+                source.close();
+                return sink.runs();
+            });
+        }
+        // a range starts where the one before it ended, so the runs join
+        List<RunInfo> infos = new ArrayList<>();
+        for (List<RunInfo> rangeRuns : runAll(ranges, threads)) {
+            infos.addAll(rangeRuns);
+        }
+        if (config.isRestartable()) {
+            out.force(false);
+        }
+        out.close();
+        return infos;
+    }
+
+
+    /**
+     * forms runs from a source with replacement selection.
+     * Records smaller than the last one output are set aside in the
+     * dead zone at the end of the heap, and a run only ends once the
+     * active heap is empty, so runs average twice the heap size.
+     * A record equal to the last one output stays in the current run,
+     * so when stable, equal keys never leave the run in a later order
+     * than they came in.
+     * 
+     * @param source
+     *            the records to read
+     * @param sink
+     *            where the runs are written
+     * @param heapRecords
+     *            the number of records held in the heap
+     * @param format
+     *            the layout of the records
+     * @param stable
+     *            true to break ties between equal keys by input order
+     * @return
+     *         the start of each run followed by the end of the last one
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static List<Long> selectRuns(
+        BlockSource source,
+        BlockSink sink,
+        int heapRecords,
+        RecordFormat format,
+        boolean stable)
+        throws IOException {
+        List<Long> selected = new ArrayList<>();
+        ByteBuffer inbb = ByteBuffer.allocate(0);
+
+        // fill the arena from the start of the source
+        RecordArena arena = new RecordArena(heapRecords, format, stable);
+        int filled = 0;
+        while (filled < heapRecords && (inbb.hasRemaining()
+            || (inbb = source.nextBlock()) != null)) {
+            arena.read(filled, inbb);
+            filled++;
+        }
+        if (inbb == null) {
+            inbb = ByteBuffer.allocate(0);
+        }
+
+        // create the heap over the arena slots
+        RecordHeap heap = new RecordHeap(arena, filled);
+        selected.add(sink.position());
+
+        // replace the min with the next input record until input runs out
+        while (inbb.hasRemaining() || (inbb = source.nextBlock()) != null) {
+            int min = heap.getMin();
+            arena.write(min, sink.buffer());
+            if (!sink.buffer().hasRemaining()) {
+                sink.flush();
+            }
+
+            // reuse the slot, moving it to the dead zone if it can not
+            // be part of this run
+            long key = arena.key(inbb);
+            boolean dead = arena.compare(inbb, key, min) < 0;
+            arena.read(min, inbb, key);
+            if (dead) {
+                heap.swap(0, heap.heapSize() - 1);
+                heap.setHeapSize(heap.heapSize() - 1);
+            }
+            if (heap.heapSize() > 0) {
+                heap.siftDown(0);
+            }
+            else {
+                // the run is over, so the dead zone becomes the next run
+                selected.add(sink.endRun());
+                heap.setHeapSize(filled);
+                heap.buildHeap();
             }
         }
 
-        // empty heap after main process
-        heap.setHeapSize(RECORDS_PER_BLOCK * BLOCKS_IN_RAM);
-        heap.buildHeap();
-        outbb.position(0);
+        // finish the current run from the active heap
+        int active = heap.heapSize();
         while (heap.heapSize() > 0) {
-            // get the min and put in outbuffer
-            Record min = heap.removeMin();
-            outbb.putLong(min.getRecID());
-            outbb.putDouble(min.getKey());
+            arena.write(heap.removeMin(), sink.buffer());
+            if (!sink.buffer().hasRemaining()) {
+                sink.flush();
+            }
+        }
 
-            // when outbuffer is full
-            if (outbb.position() >= outBuff.length - 1) {
-                runs.add(outFile.getFilePointer());
-                outFile.write(outBuff);
-                outbb.position(0);
-                bb.clear();
+        // then the dead zone forms the last run
+        int dead = filled - active;
+        if (dead > 0) {
+            selected.add(sink.endRun());
+            for (int i = 0; i < dead; i++) {
+                heap.swap(i, active + i);
+            }
+            heap.setHeapSize(dead);
+            heap.buildHeap();
+            while (heap.heapSize() > 0) {
+                arena.write(heap.removeMin(), sink.buffer());
+                if (!sink.buffer().hasRemaining()) {
+                    sink.flush();
+                }
             }
         }
 
         // adding end run position to runs
-        runs.add(raf.length());
-        // close files
-        outFile.close();
-        raf.close();
+        selected.add(sink.endRun());
+        return selected;
+    }
 
-        // copy results back to input and then delete created file
-        copyFile(selectOutput, inFile);
-        selectOutput.delete();
 
+    /**
+     * forms runs from a source by radix sorting one memory load of
+     * records at a time, so every run but the last is the heap size
+     * 
+     * @param source
+     *            the records to read
+     * @param sink
+     *            where the runs are written
+     * @param chunkRecords
+     *            the number of records sorted at once
+     * @param format
+     *            the layout of the records
+     * @return
+     *         the start of each run followed by the end of the last one
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static List<Long> sortRuns(
+        BlockSource source,
+        BlockSink sink,
+        int chunkRecords,
+        RecordFormat format)
+        throws IOException {
+        List<Long> sorted = new ArrayList<>();
+        sorted.add(sink.position());
+        ByteBuffer chunk = ByteBuffer.allocate(chunkRecords * format
+            .getWidth());
+        long[] keys = new long[chunkRecords];
+        int[] order = new int[chunkRecords];
+
+        ByteBuffer inbb = source.nextBlock();
+        while (inbb != null) {
+            // copy blocks in until the chunk is full or input runs out
+            chunk.clear();
+            while (inbb != null && chunk.hasRemaining()) {
+                int len = Math.min(chunk.remaining(), inbb.remaining());
+                chunk.put(chunk.position(), inbb, inbb.position(), len);
+                chunk.position(chunk.position() + len);
+                inbb.position(inbb.position() + len);
+                if (!inbb.hasRemaining()) {
+                    inbb = source.nextBlock();
+                }
+            }
+            sortChunk(chunk, chunk.position() / format.getWidth(), keys,
+                order, format, 1, sink);
+            sorted.add(sink.endRun());
+        }
+        return sorted;
+    }
+
+
+    /**
+     * radix sorts the records in a buffer on their normalized keys and
+     * writes them to a sink in order. Equal keys keep their input order.
+     * 
+     * @param data
+     *            the records, starting at index 0
+     * @param records
+     *            the number of records in data
+     * @param keys
+     *            room for a key per record
+     * @param order
+     *            room for an index per record
+     * @param format
+     *            the layout of the records
+     * @param threads
+     *            the most threads the radix sort may use
+     * @param sink
+     *            where the sorted records are written
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static void sortChunk(
+        ByteBuffer data,
+        int records,
+        long[] keys,
+        int[] order,
+        RecordFormat format,
+        int threads,
+        BlockSink sink)
+        throws IOException {
+        int width = format.getWidth();
+        for (int i = 0; i < records; i++) {
+            keys[i] = format.normalizedKey(data, i * width);
+            order[i] = i;
+        }
+        RadixSort.sort(keys, order, records, threads);
+        if (!format.isNormalizedExact()) {
+            breakTies(data, records, keys, order, format);
+        }
+
+        for (int i = 0; i < records; i++) {
+            ByteBuffer outBB = sink.buffer();
+            outBB.put(outBB.position(), data, order[i] * width, width);
+            outBB.position(outBB.position() + width);
+            if (!outBB.hasRemaining()) {
+                sink.flush();
+            }
+        }
+    }
+
+
+    /**
+     * sorts each stretch of equal key prefixes on the full keys, for
+     * formats whose normalized keys are only a prefix
+     * 
+     * @param data
+     *            the records
+     * @param records
+     *            the number of records
+     * @param keys
+     *            the sorted normalized keys
+     * @param order
+     *            the record index of each key
+     * @param format
+     *            the layout of the records
+     */
+    private static void breakTies(
+        ByteBuffer data,
+        int records,
+        long[] keys,
+        int[] order,
+        RecordFormat format) {
+        int width = format.getWidth();
+        int start = 0;
+        while (start < records) {
+            int end = start + 1;
+            while (end < records && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                // a stable sort keeps input order for equal keys
+                Integer[] tied = new Integer[end - start];
+                for (int i = start; i < end; i++) {
+                    tied[i - start] = order[i];
+                }
+                Arrays.sort(tied, (a, b) -> format.compare(data, a * width,
+                    data, b * width));
+                for (int i = start; i < end; i++) {
+                    order[i] = tied[i - start];
+                }
+            }
+            start = end;
+        }
+    }
+
+
+    /**
+     * runs tasks on up to the given number of threads and waits for all
+     * of them, returning their results in order
+     * 
+     * @param <T>
+     *            the result type
+     * @param tasks
+     *            the tasks to run
+     * @param threads
+     *            the most tasks run at once
+     * @return
+     *         the results of the tasks
+     * @throws IOException
+     *             if a task fails
+     */
+    static <T> List<T> runAll(List<Callable<T>> tasks, int threads)
+        throws IOException {
+        List<T> results = new ArrayList<>();
+        // no pool needed for a single thread
+        if (threads <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                }
+                catch (IOException | RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads,
+            tasks.size()));
+        try {
+            for (Future<T> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while sorting");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return results;
     }
 
 
     /**
-     * copies contents of one file to another
+     * copies contents of one file to another,
+     * letting the OS move the bytes with transferTo
      * 
      * @param inputFile
      *            the input file
@@ -376,37 +935,96 @@ public class ByteFile {
     public static void copyFile(File inputFile, File outputFile)
         throws IOException {
 
-        // copy one block at a time
-        byte[] copy = new byte[BYTES_PER_BLOCK];
-        ByteBuffer copyBB = ByteBuffer.wrap(copy);
-        copyBB.position(0);
-        RandomAccessFile inCopyRaf = new RandomAccessFile(inputFile, "r");
         // delete old contents
         outputFile.delete();
-        RandomAccessFile outCopyRaf = new RandomAccessFile(outputFile, "rw");
-        // while there is still data to read
-        while (inCopyRaf.read(copy) != -1) {
-            outCopyRaf.write(copy);
-            copyBB.clear();
-            copyBB.position(0);
+        FileChannel in = FileChannel.open(inputFile.toPath(),
+            StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(outputFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // transferTo may move fewer bytes than asked, so keep going
+        long size = in.size();
+        long copied = 0;
+        while (copied < size) {
+            copied += in.transferTo(copied, size - copied, out);
         }
         // close file
-        outCopyRaf.close();
-        inCopyRaf.close();
+        out.close();
+        in.close();
+
+    }
+
+
+    /**
+     * moves one file over another, renaming it in place when both are on
+     * the same file system so no data is copied
+     * 
+     * @param inputFile
+     *            the file to move
+     * @param outputFile
+     *            the file to be replaced
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public static void moveFile(File inputFile, File outputFile)
+        throws IOException {
+        try {
+            Files.move(inputFile.toPath(), outputFile.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            // different file systems, so the data has to be copied
+            Files.move(inputFile.toPath(), outputFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
+
+    /**
+     * syncs the directory holding a file, so a rename into it survives a
+     * crash. Platforms that can not open a directory, like Windows, are
+     * left to make renames as durable as they do anyway.
+     * 
+     * @param file
+     *            a file in the directory
+     * @throws IOException
+     *             if syncing an opened directory fails
+     */
+    static void syncDirectory(File file) throws IOException {
+        Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        }
+        catch (IOException e) {
+            return;
+        }
+        try {
+            channel.force(true);
+        }
+        finally {
+            channel.close();
+        }
     }
 
 
     /**
      * External Sorts multiWayMerge algorithm to
-     * merge sorted runs together
+     * merge sorted runs together, one pass at a time until a single
+     * plain run is left. Passes before the last write scratch files in
+     * the least loaded of the config's temp directories, which with two
+     * or more directories is never the one the pass reads. Each pass's
+     * input is deleted, or truncated when it is this.filename, as soon
+     * as the pass has read it. The last pass writes straight to
+     * this.filename, unless this file is also its input.
      * 
      * @param runsList
      *            list of the positions of the sorted runs
      * @param inputFile
      *            the input file to be used
      * @param outputFile
-     *            the file to be output to
+     *            the file the last pass writes when its input is
+     *            this.filename, then moved over it
      * @throws IOException
      *             if a file error occurs
      */
@@ -416,88 +1034,481 @@ public class ByteFile {
         String outputFile)
         throws IOException {
 
-        // finished when the runs list is the start and end of file
-        if (runsList.size() == 2) {
-
-            // if the data is already in this.filename
-            if (inputFile.equals(this.filename)) {
+        // finished when the runs list is the start and end of file,
+        // and that run is not encoded
+        ScratchSpace space = new ScratchSpace(config);
+        while (runsList.size() > 2 || packed) {
+            boolean last = runsList.size() - 1 <= config.getFanIn();
+            String target;
+            if (!last) {
+                target = space.create("pass", runsList.get(runsList.size()
+                    - 1)).getPath();
+            }
+            else if (!inputFile.equals(filename)) {
+                target = filename;
+            }
+            else {
+                target = outputFile;
+            }
 
-                // delete old data in output file
-                File del = new File(outputFile);
-                del.delete();
-                return;
+            // the last pass writes plain records
+            BlockCodec inCodec = packed ? config.getRunCodec() : null;
+            BlockCodec outCodec = last ? null : config.getRunCodec();
+            manifest = mergePass(runsList, inputFile, inCodec, target,
+                outCodec, config);
+            runsList = manifest.boundaries();
+            packed = outCodec != null;
+            manifest.write(manifestFile(), config.isRestartable());
+
+            // the input's runs are all in target now
+            if (inputFile.equals(filename)) {
+                truncate(new File(filename));
             }
-            // if the resulting data is in the temporary file
             else {
-                // copy contents to this.filename and delete old
-                File del = new File(inputFile);
-                copyFile(del, new File(this.filename));
-                del.delete();
-                return;
+                space.release(new File(inputFile));
             }
+            inputFile = target;
         }
+        manifestFile().delete();
 
-        // create the new list of runs for next call and add 0
-        List<Long> nextRunsList = new ArrayList<>();
-        nextRunsList.add((long)0);
-        // create output file and delete old contents
-        File myOutFile = new File(outputFile);
-        myOutFile.delete();
-        RandomAccessFile out = new RandomAccessFile(myOutFile, "rw");
+        // the only pass read this.filename, so its output is moved over it
+        if (!inputFile.equals(filename)) {
+            moveFile(new File(inputFile), new File(filename));
+        }
+    }
 
-        byte[] outBuffer = new byte[BYTES_PER_BLOCK];
-        ByteBuffer outBB = ByteBuffer.wrap(outBuffer);
 
-        // loop to only get a max of 8 runs at a time
-        for (int i = 0; i < runsList.size() - 1; i += 8) {
+    /**
+     * frees the space of a file whose data has been used up, keeping
+     * the file itself
+     * 
+     * @param file
+     *            the file to empty
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static void truncate(File file) throws IOException {
+        FileChannel spent = FileChannel.open(file.toPath(),
+            StandardOpenOption.WRITE);
+        spent.truncate(0);
+        spent.close();
+    }
 
-            // create my heap of Run objects
-            MinHeap<Run> runHeap = new MinHeap<>(new Run[8], 0, 8);
-            // getting the subList of max 8 runs
-            List<Long> subRuns = runsList.subList(i, Math.min(i + 9, runsList
-                .size()));
 
-            // adding runs into a list of runs
-            for (int k = 0; k < subRuns.size() - 1; k++) {
-                Run aRun = new Run(subRuns.get(k), subRuns.get(k + 1),
-                    inputFile);
-                runHeap.insert(aRun);
-            }
+    /**
+     * creates a uniquely named file in this file's directory, for output
+     * that will be moved over this file without copying
+     * 
+     * @param prefix
+     *            the start of the file's name
+     * @return
+     *         the new, empty file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    private File siblingFile(String prefix) throws IOException {
+        return File.createTempFile(prefix, ".bin", new File(filename)
+            .getAbsoluteFile().getParentFile());
+    }
 
-            // keep merging the min until all the runs have run out
-            // delete a run from heap when its finished
-            while (runHeap.heapSize() > 0) {
-                Run minRun = runHeap.getMin();
 
-                // put the data in outBuffer
-                outBB.putLong(minRun.getRecord().getRecID());
-                outBB.putDouble(minRun.getRecord().getKey());
+    /**
+     * plans the merge of the current runs by their lengths, with the
+     * fan-in the memory budget allows. A stable config only merges
+     * neighbouring runs.
+     * 
+     * @return
+     *         the plan, to inspect or pass to merge
+     */
+    public MergePlan planMerge() {
+        List<Long> lengths = new ArrayList<>();
+        for (int i = 0; i + 1 < runs.size(); i++) {
+            lengths.add(runs.get(i + 1) - runs.get(i));
+        }
+        return MergePlan.plan(lengths, config.getFanIn(), config.isStable());
+    }
 
-                // if the run is finished then close its file and delete from
-                // heap
-                if (minRun.advanceRecord() == false) {
-                    runHeap.getMin().close();
-                    runHeap.removeMin();
-                }
 
-                // rebuilding the heap
-                runHeap.buildHeap();
+    /**
+     * merges the current runs into the sorted file as planned. Each run
+     * merged on the way gets a scratch file of its own in the least
+     * loaded temp directory, deleted once it is merged again, so the
+     * steps of a wave merge at the same time. This file is emptied once
+     * its runs are all read, and the last step writes straight over it
+     * when none of them are its inputs, or writes a file beside it,
+     * which then replaces it, when some are.
+     * 
+     * @param plan
+     *            a plan for the current runs
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void merge(MergePlan plan) throws IOException {
+        // a single run still needs decoding if it was encoded
+        List<MergePlan.Step> steps = new ArrayList<>(plan.getSteps());
+        if (steps.isEmpty() && packed) {
+            steps.add(new MergePlan.Step(new int[] { 0 }, runs.get(1) - runs
+                .get(0), 1));
+        }
 
-                // write to outFile if outBuffer is full
-                if (outBB.position() >= outBuffer.length - 1) {
-                    out.write(outBuffer);
-                    outBB.position(0);
-                    outBB.clear();
+        int total = plan.getRuns() + steps.size();
+        String[] files = new String[total];
+        long[] starts = new long[total];
+        long[] ends = new long[total];
+        boolean[] encoded = new boolean[total];
+        for (int i = 0; i < plan.getRuns(); i++) {
+            files[i] = filename;
+            starts[i] = runs.get(i);
+            ends[i] = runs.get(i + 1);
+            encoded[i] = packed;
+        }
+        BlockCodec codec = config.getRunCodec();
+
+        // the last wave this file's runs are read in; once it is done
+        // the sorted run can be written straight over them
+        int spentWave = 0;
+        for (MergePlan.Step step : steps) {
+            for (int in : step.getInputs()) {
+                if (in < plan.getRuns()) {
+                    spentWave = Math.max(spentWave, step.getWave());
                 }
             }
-            nextRunsList.add(subRuns.get(subRuns.size() - 1));
+        }
+        int waves = steps.isEmpty() ? 0 : steps.get(steps.size() - 1)
+            .getWave();
+
+        // merge a wave at a time, each step into a file of its own, the
+        // runs of this file sharing one channel until they are all read
+        ScratchSpace space = new ScratchSpace(config);
+        File sorted = new File(filename);
+        FileChannel shared = holdRuns(filename, packed ? codec : null, config);
+        try {
+            for (int wave = 1; wave <= waves; wave++) {
+                if (wave == waves && spentWave == waves) {
+                    sorted = siblingFile("merge");
+                }
+                List<Callable<Long>> tasks = new ArrayList<>();
+                for (int s = 0; s < steps.size(); s++) {
+                    if (steps.get(s).getWave() != wave) {
+                        continue;
+                    }
+                    int id = plan.getRuns() + s;
+                    int[] inputs = steps.get(s).getInputs();
+                    boolean last = s == steps.size() - 1;
+                    File out = last
+                        ? sorted
+                        : space.create("merge", steps.get(s).getBytes());
+                    files[id] = out.getPath();
+                    encoded[id] = !last && codec != null;
+                    tasks.add(() -> {
+                        Run[] group = new Run[inputs.length];
+                        for (int k = 0; k < inputs.length; k++) {
+                            int in = inputs[k];
+                            group[k] = new Run(starts[in], ends[in],
+                                files[in], config, encoded[in] ? codec : null);
+                        }
+                        FileChannel channel = FileChannel.open(out.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE);
+                        try {
+                            ends[id] = mergeRuns(group, BlockSink.open(
+                                channel, out.toPath(), 0, config, encoded[id]
+                                    ? codec
+                                    : null), config);
+                        }
+                        finally {
+                            channel.close();
+                        }
+                        return ends[id];
+                    });
+                }
+                runAll(tasks, mergeConcurrency(config));
+                if (wave == spentWave) {
+                    ChannelCache.shared().release(shared);
+                    shared = null;
+                }
 
+                // the merged runs are not needed again
+                for (MergePlan.Step step : steps) {
+                    if (step.getWave() != wave) {
+                        continue;
+                    }
+                    for (int in : step.getInputs()) {
+                        if (in >= plan.getRuns()) {
+                            space.release(new File(files[in]));
+                        }
+                    }
+                }
+                if (wave == spentWave && spentWave < waves) {
+                    // the runs can no longer be resumed from the manifest
+                    manifestFile().delete();
+                    truncate(new File(filename));
+                }
+            }
+        }
+        finally {
+            if (shared != null) {
+                ChannelCache.shared().release(shared);
+            }
+            space.close();
         }
 
+        // an unencoded single run is already sorted
+        if (!sorted.getPath().equals(filename)) {
+            moveFile(sorted, new File(filename));
+        }
+        long length = new File(filename).length();
+        runs.clear();
+        runs.add((long)0);
+        runs.add(length);
+        packed = false;
+        manifestFile().delete();
+    }
+
+
+    /**
+     * carries on a sort whose merge was stopped, starting from the last
+     * pass saved in the manifest
+     * 
+     * @param tempFile
+     *            the scratch file the stopped merge was using
+     * @return
+     *         true if there was a merge to carry on
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public boolean resumeMerge(String tempFile) throws IOException {
+        File saved = manifestFile();
+        if (!saved.exists()) {
+            return false;
+        }
+        manifest = RunManifest.read(saved);
+        packed = manifest.isEncoded();
+        runs.clear();
+        runs.addAll(manifest.boundaries());
+        String inputFile = manifest.getRunFile();
+        multiwayMerge(runs, inputFile, inputFile.equals(filename)
+            ? tempFile
+            : filename);
+        return true;
+    }
+
+
+    /**
+     * merges every group of up to fan-in runs in a file into one run
+     * each, written at the same offsets in the output file unless either
+     * side is encoded
+     * 
+     * @param runsList
+     *            the start of each run followed by the end of the last one
+     * @param inputFile
+     *            the file holding the runs
+     * @param inCodec
+     *            the codec the runs were written with, or null for none
+     * @param outputFile
+     *            the file to write the merged runs to
+     * @param outCodec
+     *            the codec to write the merged runs with, or null for none
+     * @param config
+     *            the sort settings
+     * @return
+     *         the runs in the output file
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static RunManifest mergePass(
+        List<Long> runsList,
+        String inputFile,
+        BlockCodec inCodec,
+        String outputFile,
+        BlockCodec outCodec,
+        SortConfig config)
+        throws IOException {
+
+        // the runs of the next pass
+        List<RunInfo> merged = new ArrayList<>();
+        RecordFormat format = config.getRecordFormat();
+        int fanIn = config.getFanIn();
+
+        // create output file and delete old contents
+        File myOutFile = new File(outputFile);
+        myOutFile.delete();
+        FileChannel out = FileChannel.open(myOutFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        // the groups of a pass are independent and each one's output takes
+        // the same bytes its runs did, so they can merge at the same time.
+        // Encoding changes the size of a group, so then each one starts
+        // where the one before it ended. Every run reads the input through
+        // one shared channel.
+        FileChannel shared = holdRuns(inputFile, inCodec, config);
+        boolean encoded = inCodec != null || outCodec != null;
+        List<Callable<RunInfo>> groups = new ArrayList<>();
+        for (int i = 0; i < runsList.size() - 1; i += fanIn) {
+
+            // getting the subList of max fanIn runs
+            List<Long> subRuns = runsList.subList(i, Math.min(i + fanIn + 1,
+                runsList.size()));
+            if (encoded) {
+                long start = merged.isEmpty()
+                    ? 0
+                    : merged.get(merged.size() - 1).getEnd();
+                IndexingBlockSink sink = new IndexingBlockSink(BlockSink.open(
+                    out, myOutFile.toPath(), start, config, outCodec), format,
+                    config.isBlockIndex());
+                mergeGroup(subRuns, inputFile, inCodec, sink, config);
+                merged.addAll(sink.runs());
+            }
+            else {
+                groups.add(() -> {
+                    IndexingBlockSink sink = new IndexingBlockSink(BlockSink
+                        .open(out, myOutFile.toPath(), subRuns.get(0), config),
+                        format, config.isBlockIndex());
+                    mergeGroup(subRuns, inputFile, null, sink, config);
+                    return sink.runs().get(0);
+                });
+            }
+        }
+
+        merged.addAll(runAll(groups, mergeConcurrency(config)));
+        ChannelCache.shared().release(shared);
+        if (config.isRestartable()) {
+            out.force(false);
+        }
         out.close();
-        // recursive call to next multiWayMerge using this outputFile as new
-        // input
-        multiwayMerge(nextRunsList, outputFile, inputFile);
+        return new RunManifest(outputFile, outCodec != null, merged);
+    }
+
+
+    /**
+     * opens the channel the runs of a file are read through and keeps it
+     * open until it is released, so runs that are opened one after
+     * another share it instead of each opening the file
+     * 
+     * @param filename
+     *            the file holding the runs
+     * @param codec
+     *            the codec the runs were written with, or null for none
+     * @param config
+     *            the sort settings
+     * @return
+     *         the channel, to give back to the shared ChannelCache
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    static FileChannel holdRuns(
+        String filename,
+        BlockCodec codec,
+        SortConfig config)
+        throws IOException {
+        Path file = Paths.get(filename);
+        if (config.isDirectIO() && codec == null) {
+            try {
+                return ChannelCache.shared().open(file,
+                    StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+            }
+            catch (UnsupportedOperationException | FileSystemException e) {
+                // the runs are read through the page cache
+            }
+        }
+        return ChannelCache.shared().open(file, StandardOpenOption.READ);
+    }
+
+
+    /**
+     * the number of merges that can run at once, as many as the memory
+     * budget holds the blocks of at full fan-in
+     * 
+     * @param config
+     *            the sort settings
+     * @return
+     *         the number of concurrent merges, at least 1
+     */
+    static int mergeConcurrency(SortConfig config) {
+        long groupBytes = ((long)config.getFanIn() * config
+            .getReadAheadBlocks() + config.getWriteBehindBlocks()) * config
+                .getBlockBytes();
+        return (int)Math.max(1, Math.min(config.getThreads(), config
+            .getMemoryBytes() / groupBytes));
+    }
+
+
+    /**
+     * merges one group of runs into a sink, which is closed after
+     * 
+     * @param subRuns
+     *            the start of each run followed by the end of the last one
+     * @param inputFile
+     *            the file holding the runs
+     * @param codec
+     *            the codec the runs were written with, or null for none
+     * @param sink
+     *            where the merged run is written
+     * @param config
+     *            the sort settings
+     * @return
+     *         the end of the merged run
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static long mergeGroup(
+        List<Long> subRuns,
+        String inputFile,
+        BlockCodec codec,
+        BlockSink sink,
+        SortConfig config)
+        throws IOException {
+
+        // open the runs of this group
+        Run[] group = new Run[subRuns.size() - 1];
+        for (int k = 0; k < group.length; k++) {
+            group[k] = new Run(subRuns.get(k), subRuns.get(k + 1), inputFile,
+                config, codec);
+        }
+
+        return mergeRuns(group, sink, config);
+    }
+
+
+    /**
+     * merges open runs into a sink, which is closed after. Equal keys
+     * are taken from the earliest run in the array first.
+     * 
+     * @param group
+     *            the runs, each at its first record
+     * @param sink
+     *            where the merged run is written
+     * @param config
+     *            the sort settings
+     * @return
+     *         the end of the merged run
+     * @throws IOException
+     *             if a file error occurs
+     */
+    static long mergeRuns(Run[] group, BlockSink sink, SortConfig config)
+        throws IOException {
+
+        // keep merging the min until all the runs have run out,
+        // the tree closes each run when its finished
+        LoserTree tree = new LoserTree(group, group.length, config
+            .getRecordFormat());
+        while (!tree.isEmpty()) {
+            Run minRun = tree.getMin();
+
+            // put the data in the sink's current block
+            ByteBuffer outBB = sink.buffer();
+            minRun.writeRecord(outBB);
+            tree.advance();
+
+            // write to outFile if the block is full
+            if (!outBB.hasRemaining()) {
+                sink.flush();
+            }
+        }
+
+        // write whatever is left of the last block
+        sink.close();
+        return sink.position();
     }
 
 
@@ -512,17 +1523,12 @@ public class ByteFile {
      *             if a file error occurs
      */
     public static int countBlocks(String filename) throws IOException {
-        int count = 0;
-        RandomAccessFile raf = new RandomAccessFile(new File(filename), "r");
-        byte[] basicBuffer = new byte[BYTES_PER_BLOCK];
-        // count while there are more blocks to read
-        while (raf.read(basicBuffer) != -1) {
-            count++;
+        File file = new File(filename);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(filename);
         }
-        // close file and return count
-        raf.close();
-        return count;
-
+        // a partial block at the end still counts as a block
+        return (int)((file.length() + BYTES_PER_BLOCK - 1) / BYTES_PER_BLOCK);
     }
 
 }
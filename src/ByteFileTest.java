@@ -2,6 +2,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import student.TestableRandom;
 
 /**
  * test class for ByteFile
@@ -27,6 +31,8 @@ public class ByteFileTest extends student.TestCase {
         ByteFile.copyFile(new File("sampleInput16.bin"), copySample);
         bf = new ByteFile("input16Copy.bin", ByteFile.countBlocks(
             "input16Copy.bin"));
+        // runs left by a test that did not merge them
+        bf.manifestFile().delete();
     }
 
 
@@ -70,9 +76,33 @@ public class ByteFileTest extends student.TestCase {
     public void testGetRun() throws IOException {
         assertEquals(bf.getRuns().toString(), "[]");
         bf.replacementSelection();
-        assertEquals(bf.getRuns().toString(), "[0, 8192, 16384,"
-            + " 24576, 32768, 40960, " + "49152, 57344, 65536, 73728, 81920, "
-            + "90112, 98304, 106496, 114688, 122880, 131072]");
+        assertRealRuns();
+    }
+
+
+    /**
+     * checks that the runs cover the file, are each sorted,
+     * and are longer than the heap of 8 blocks
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    private void assertRealRuns() throws IOException {
+        List<Long> runs = bf.getRuns();
+        assertEquals(0, (long)runs.get(0));
+        assertEquals(131072, (long)runs.get(runs.size() - 1));
+        // 16 blocks through an 8 block heap make about 2 runs
+        assertTrue(runs.size() <= 4);
+        for (int i = 0; i < runs.size() - 1; i++) {
+            assertTrue(runs.get(i) < runs.get(i + 1));
+            Run run = new Run(runs.get(i), runs.get(i + 1), "input16Copy.bin");
+            double prev = run.getRecord().getKey();
+            while (run.advanceRecord()) {
+                assertTrue(prev <= run.getRecord().getKey());
+                prev = run.getRecord().getKey();
+            }
+            run.close();
+        }
     }
 
 
@@ -142,14 +172,506 @@ public class ByteFileTest extends student.TestCase {
     public void testReplacementSelection() throws IOException {
         bf.writeRandomRecords();
         bf.replacementSelection();
-        assertEquals(bf.getRuns().toString(), "[0, 8192, 16384,"
-            + " 24576, 32768, 40960, " + "49152, 57344, 65536, 73728, 81920, "
-            + "90112, 98304, 106496, 114688, 122880, 131072]");
+        assertRealRuns();
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        assertRealRuns();
+    }
+
+
+    /**
+     * tests replacementSelection split across threads
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testParallelReplacementSelection() throws IOException {
+        SortConfig config = new SortConfig();
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        List<Long> runs = bf.getRuns();
+        assertEquals(0, (long)runs.get(0));
+        assertEquals(131072, (long)runs.get(runs.size() - 1));
+        // each quarter of the file starts a new run
+        assertTrue(runs.contains((long)32768));
+        assertTrue(runs.contains((long)65536));
+        assertTrue(runs.contains((long)98304));
+        bf.multiwayMerge(runs, "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+    }
+
+
+    /**
+     * tests multiwayMerge merging groups of a pass at the same time
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testParallelMultiwayMerge() throws IOException {
+        // 2 way merges, with room for two groups at once
+        SortConfig config = new SortConfig(8 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        assertTrue(bf.getRuns().size() > 4);
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(new File("mergeTempFile.bin").exists());
+    }
+
+
+    /**
+     * tests that radix sorted runs are each a full heap long
+     * and merge into a sorted file
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testRadixRuns() throws IOException {
+        SortConfig config = new SortConfig();
+        config.setRadixRuns(true);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        // each run is as many records as fit with their keys and indexes
+        assertEquals("[0, 26208, 52416, 78624, 104832, 131040, 131072]", bf
+            .getRuns().toString());
+        assertEquals(26208, config.getRadixRecords()
+            * ByteFile.BYTES_PER_RECORD);
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+    }
+
+
+    /**
+     * tests that the manifest describes the runs and is saved
+     * until the merge finishes
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testManifest() throws IOException {
+        SortConfig config = new SortConfig();
+        config.setBlockIndex(true);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        RunManifest manifest = bf.getManifest();
+        assertEquals(bf.getRuns(), manifest.boundaries());
+        assertEquals(16 * ByteFile.RECORDS_PER_BLOCK, manifest.records());
+        for (RunInfo run : manifest.getRuns()) {
+            assertEquals(run.getLength(), run.getRecords()
+                * ByteFile.BYTES_PER_RECORD);
+            assertTrue(Long.compareUnsigned(run.getMinKey(), run
+                .getMaxKey()) <= 0);
+            assertEquals(run.getOffset(), run.getBlockOffset(0));
+            assertEquals(run.getMinKey(), run.getBlockKey(0));
+            for (int b = 1; b < run.getBlocks(); b++) {
+                assertEquals(0, run.getBlockOffset(b)
+                    % ByteFile.BYTES_PER_BLOCK);
+                assertTrue(Long.compareUnsigned(run.getBlockKey(b - 1), run
+                    .getBlockKey(b)) <= 0);
+            }
+        }
+
+        RunManifest saved = RunManifest.read(bf.manifestFile());
+        assertEquals("input16Copy.bin", saved.getRunFile());
+        assertEquals(manifest.boundaries(), saved.boundaries());
+        assertEquals(manifest.records(), saved.records());
+
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertFalse(bf.manifestFile().exists());
+    }
+
+
+    /**
+     * tests carrying on a merge from the saved manifest, as a new
+     * process would after the first one stopped
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testResumeMerge() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setRunCodec(new DeltaKeyCodec(config.getRecordFormat()));
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        assertFalse(bf.resumeMerge("mergeTempFile.bin"));
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        assertTrue(bf.resumeMerge("mergeTempFile.bin"));
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(bf.manifestFile().exists());
+    }
+
+
+    /**
+     * tests that a checkpointed sort stopped part way leaves the input
+     * as it was, and that running it again finishes from the manifest
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSortWithCheckpoints() throws IOException {
+        bf.writeRandomRecords();
+        byte[] input = Files.readAllBytes(copySample.toPath());
+
+        // a codec that fails part way through the first merge pass
+        BlockCodec failing = new LzBlockCodec() {
+            private int blocks;
+
+            @Override
+            public void encode(ByteBuffer src, ByteBuffer dst) {
+                if (++blocks > 30) {
+                    throw new IllegalStateException("stopped");
+                }
+                super.encode(src, dst);
+            }
+        };
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setRestartable(true);
+        config.setRunCodec(failing);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        Exception thrown = null;
+        try {
+            bf.sort();
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertTrue(Arrays.equals(input, Files.readAllBytes(copySample
+            .toPath())));
+        assertTrue(bf.manifestFile().exists());
+
+        // a new process picks up the saved runs
+        config.setRunCodec(new LzBlockCodec());
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.sort();
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(bf.manifestFile().exists());
+        assertFalse(new File("input16Copy.bin.runs0").exists());
+        assertFalse(new File("input16Copy.bin.runs1").exists());
+        assertFalse(new File("input16Copy.bin.sorted").exists());
+    }
+
+
+    /**
+     * tests that a checkpointed sort ignores a manifest it did not
+     * write, here one describing runs kept in the input itself
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSortWithCheckpointsIgnoresOtherManifest()
+        throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setRestartable(true);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        assertEquals("input16Copy.bin", RunManifest.read(bf.manifestFile())
+            .getRunFile());
+
+        // the input changes before the next sort
+        bf.writeRandomRecords();
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.sort();
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(bf.manifestFile().exists());
+    }
+
+
+    /**
+     * tests running a checkpointed sort again after it was stopped just
+     * after renaming its only run over the input
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSortWithCheckpointsAfterCommit() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setRestartable(true);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.sort();
+        assertTrue(bf.isSorted());
+
+        // what the stop leaves: the sorted input and a manifest naming
+        // the run file that was renamed over it
+        long length = copySample.length();
+        RunInfo run = new RunInfo(0, length, length
+            / ByteFile.BYTES_PER_RECORD, 0, 0, new long[0], new long[0]);
+        new RunManifest("input16Copy.bin.runs0", false, Arrays.asList(run))
+            .write(bf.manifestFile());
+        assertFalse(new File("input16Copy.bin.runs0").exists());
+
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.sort();
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertEquals(Arrays.asList(0L, length), bf.getRuns());
+        assertFalse(bf.manifestFile().exists());
+    }
+
+
+    /**
+     * tests sorting with compressed intermediate runs over several
+     * passes, and when there is only one run
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testCompressedRuns() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setRunCodec(new LzBlockCodec());
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+
+        // already sorted input forms a single encoded run
+        bf.replacementSelection();
+        assertEquals(2, bf.getRuns().size());
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+    }
+
+
+    /**
+     * tests sorting an empty file, which forms empty runs, through a
+     * merge and through a checkpointed sort with compressed runs
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testEmptyInput() throws IOException {
+        File empty = new File("emptyInput.bin");
+        new RandomAccessFile(empty, "rw").close();
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        bf = new ByteFile("emptyInput.bin", 0, config);
+        bf.replacementSelection();
+        bf.multiwayMerge(bf.getRuns(), "emptyInput.bin", "mergeTempFile.bin");
+        assertEquals(0, empty.length());
+        assertTrue(bf.isSorted());
+
+        config.setRestartable(true);
+        config.setRunCodec(new LzBlockCodec());
+        bf = new ByteFile("emptyInput.bin", 0, config);
+        bf.sortWithCheckpoints();
+        assertEquals(0, empty.length());
+        assertFalse(bf.manifestFile().exists());
+        bf.manifestFile().delete();
+        empty.delete();
+    }
+
+
+    /**
+     * tests a planned sort whose compressed runs come out as a single
+     * run, which is decoded by a step of its own
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testCompressedSingleRun() throws IOException {
+        SortConfig config = new SortConfig(8 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 8);
+        config.setRunCodec(new LzBlockCodec());
+        bf = new ByteFile("input16Copy.bin", 4, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        assertEquals(2, bf.getRuns().size());
+        bf.merge(bf.planMerge());
+        assertTrue(bf.isSorted());
+        assertEquals(4, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(bf.manifestFile().exists());
+        String[] left = new File(".").list((dir, name) -> name.matches(
+            "merge\\d+\\.bin"));
+        assertEquals(0, left.length);
+    }
+
+
+    /**
+     * tests that a stable sort keeps records with equal keys in input
+     * order through run generation and every merge pass
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testStableSort() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setStable(true);
+        config.setThreads(2);
+        int records = 16 * ByteFile.RECORDS_PER_BLOCK;
+        RandomAccessFile raf = new RandomAccessFile("input16Copy.bin", "rw");
+        TestableRandom random = new TestableRandom();
+        for (int i = 0; i < records; i++) {
+            // the recID is the input position, with only 5 distinct keys
+            raf.writeLong(i);
+            raf.writeDouble(random.nextInt(5));
+        }
+        raf.close();
+
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.replacementSelection();
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        raf = new RandomAccessFile("input16Copy.bin", "r");
+        long prevID = -1;
+        double prevKey = -1;
+        for (int i = 0; i < records; i++) {
+            long recID = raf.readLong();
+            double key = raf.readDouble();
+            assertTrue(key > prevKey || recID > prevID);
+            prevID = recID;
+            prevKey = key;
+        }
+        raf.close();
+    }
+
+
+    /**
+     * tests that merge passes write scratch files in the temp directories
+     * and delete them once they are read
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testTempDirs() throws IOException {
+        File[] tempDirs = { new File("scratchA"), new File("scratchB") };
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        config.setTempDirs(tempDirs);
+        for (File dir : tempDirs) {
+            dir.mkdir();
+        }
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        assertTrue(bf.getRuns().size() > 4);
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        assertFalse(new File("mergeTempFile.bin").exists());
+
+        config.setRunCodec(new LzBlockCodec());
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        bf.merge(bf.planMerge());
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        for (File dir : tempDirs) {
+            assertEquals(0, dir.list().length);
+            dir.delete();
+        }
+    }
+
+
+    /**
+     * tests sorting with direct I/O, with ranges and groups written at
+     * the same time
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testDirectIO() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 3);
+        config.setDirectIO(true);
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        bf.multiwayMerge(bf.getRuns(), "input16Copy.bin", "mergeTempFile.bin");
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+
+        bf.writeRandomRecords();
+        bf.sort();
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+    }
+
+
+    /**
+     * tests merging as planned, stably and with encoded runs
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPlannedMerge() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 3);
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.replacementSelection();
+        MergePlan plan = bf.planMerge();
+        assertEquals(bf.getRuns().size() - 1, plan.getRuns());
+        bf.merge(plan);
+        assertTrue(bf.isSorted());
+        assertEquals("[0, 131072]", bf.getRuns().toString());
+        assertFalse(new File("mergeOut.bin").exists());
+        assertFalse(new File("mergeFinal.bin").exists());
+
+        config.setRunCodec(new DeltaKeyCodec(config.getRecordFormat()));
+        config.setStable(true);
         bf.writeRandomRecords();
         bf.replacementSelection();
-        assertEquals(bf.getRuns().toString(), "[0, 8192, 16384,"
-            + " 24576, 32768, 40960, " + "49152, 57344, 65536, 73728, 81920, "
-            + "90112, 98304, 106496, 114688, 122880, 131072]");
+        bf.merge(bf.planMerge());
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+    }
+
+
+    /**
+     * tests the ByteFile's sort method both in memory and
+     * through runs
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSort() throws IOException {
+        // the whole file, with a key and index per record, fits in the
+        // budget
+        SortConfig config = new SortConfig(40 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 8);
+        assertEquals(16 * ByteFile.RECORDS_PER_BLOCK, config
+            .getRadixRecords());
+        config.setThreads(4);
+        bf = new ByteFile("input16Copy.bin", 16, config);
+        bf.writeRandomRecords();
+        bf.sort();
+        assertTrue(bf.isSorted());
+        assertEquals("[0, 131072]", bf.getRuns().toString());
+        assertFalse(new File("sortOutput.bin").exists());
+
+        // the default budget holds half of it
+        bf = new ByteFile("input16Copy.bin", 16);
+        bf.writeRandomRecords();
+        bf.sort();
+        assertEquals(0, BufferPool.shared().getFreeBytes());
+        assertTrue(bf.isSorted());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
     }
 
 
@@ -212,6 +734,25 @@ public class ByteFileTest extends student.TestCase {
     }
 
 
+    /**
+     * tests the ByteFile's moveFile method
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testMoveFile() throws IOException {
+        File moved = new File("AKMovedFile");
+        ByteFile.copyFile(copySample, moved);
+        ByteFile.moveFile(moved, copySample);
+        assertFalse(moved.exists());
+        assertEquals(16, ByteFile.countBlocks("input16Copy.bin"));
+        ByteFile.copyFile(copySample, moved);
+        ByteFile.moveFile(moved, new File("AKMovedAgain"));
+        assertEquals(16, ByteFile.countBlocks("AKMovedAgain"));
+        new File("AKMovedAgain").delete();
+    }
+
+
     /**
      * tests the ByteFile's countBlocks method
      * 
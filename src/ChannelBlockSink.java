@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes blocks in order to a stream, such as a pipe or socket.
+ * The position is the number of bytes written so far.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ChannelBlockSink implements BlockSink {
+
+    private WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private long position; // bytes written before the buffer
+
+    /**
+     * constructs a sink writing to a stream
+     * 
+     * @param channel
+     *            the stream to write to
+     * @param blockBytes
+     *            the size of one block
+     */
+    public ChannelBlockSink(WritableByteChannel channel, int blockBytes) {
+        this.channel = channel;
+        buffer = BufferPool.shared().acquire(blockBytes);
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+
+    /**
+     * writes the filled part of the buffer to the stream
+     * 
+     * @throws IOException
+     *             if the stream fails
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * @return the number of bytes written, including the current block
+     */
+    @Override
+    public long position() {
+        return position + buffer.position();
+    }
+
+
+    /**
+     * writes the last partial block and gives the buffer back, the
+     * stream is left open
+     * 
+     * @throws IOException
+     *             if the stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        BufferPool.shared().release(buffer);
+        buffer = ByteBuffer.allocate(0);
+    }
+
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads blocks of records from a stream, such as a pipe or socket,
+ * as the data arrives. Each block holds whole records only.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ChannelBlockSource implements BlockSource {
+
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private int recordBytes;
+    private boolean ended;
+
+    /**
+     * constructs a source over a stream
+     * 
+     * @param channel
+     *            the stream to read, left open on close
+     * @param blockBytes
+     *            the size of one block, a multiple of the record width
+     * @param recordBytes
+     *            the width of one record
+     */
+    public ChannelBlockSource(
+        ReadableByteChannel channel,
+        int blockBytes,
+        int recordBytes) {
+        this.channel = channel;
+        this.recordBytes = recordBytes;
+        buffer = BufferPool.shared().acquire(blockBytes);
+    }
+
+
+    /**
+     * reads until a block is full or the stream ends
+     * 
+     * @return
+     *         the block, or null at the end of the stream
+     * @throws IOException
+     *             if the stream fails or ends part way through a record
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        if (ended) {
+            return null;
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                ended = true;
+                break;
+            }
+        }
+        if (buffer.position() % recordBytes != 0) {
+            throw new IOException("input ends part way through a record");
+        }
+        buffer.flip();
+        return buffer.hasRemaining() ? buffer : null;
+    }
+
+
+    /**
+     * gives back the buffer, once; the stream belongs to the caller, so
+     * it is left open
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            BufferPool.shared().release(buffer);
+            buffer = null;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Open file channels shared by everything reading or writing the same
+ * file the same way, so the runs of a merge pass open their file once
+ * instead of once each. Positional reads and writes do not move a
+ * channel's position, so sharing one is safe from any thread. A channel
+ * is closed when its last user releases it. A file replaced since its
+ * channel was opened gets a new channel, so one kept open by a user
+ * never hands out the old file's data. Files are told apart by their
+ * file key, or by their creation time on platforms without file keys,
+ * like Windows.
+ *
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ChannelCache {
+
+    private static final ChannelCache SHARED = new ChannelCache();
+
+    private Map<String, Entry> open = new HashMap<>();
+    private Map<FileChannel, Entry> users = new IdentityHashMap<>();
+    private long opened;
+
+    /**
+     * a channel and how many are using it
+     */
+    private static class Entry {
+        private String key;
+        private Object fileKey;
+        private FileChannel channel;
+        private int users;
+    }
+
+    /**
+     * @return the cache the block sources and sinks share
+     */
+    public static ChannelCache shared() {
+        return SHARED;
+    }
+
+
+    /**
+     * opens a file, sharing a channel already open on it with the same
+     * options. It is given back with release, never closed directly.
+     *
+     * @param file
+     *            the file
+     * @param options
+     *            how to open it
+     * @return
+     *         the channel
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    public synchronized FileChannel open(Path file, OpenOption... options)
+        throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        String[] names = new String[options.length];
+        for (int i = 0; i < options.length; i++) {
+            names[i] = options[i].toString();
+        }
+        Arrays.sort(names);
+        String key = path + " " + Arrays.toString(names);
+
+        Entry entry = open.get(key);
+        Object fileKey = Files.exists(path) ? identity(path) : null;
+        if (entry != null && fileKey != null && fileKey.equals(
+            entry.fileKey)) {
+            entry.users++;
+            return entry.channel;
+        }
+
+        // a replaced file's channel stays with its users until released
+        entry = new Entry();
+        entry.key = key;
+        entry.channel = FileChannel.open(path, options);
+        entry.fileKey = identity(path);
+        entry.users = 1;
+        open.put(key, entry);
+        users.put(entry.channel, entry);
+        opened++;
+        return entry.channel;
+    }
+
+
+    /**
+     * gives back a channel from open, closing it if no one else is
+     * using it
+     *
+     * @param channel
+     *            the channel
+     * @throws IOException
+     *             if closing the channel fails
+     */
+    public synchronized void release(FileChannel channel) throws IOException {
+        Entry entry = users.get(channel);
+        if (entry == null) {
+            channel.close();
+            return;
+        }
+        entry.users--;
+        if (entry.users == 0) {
+            users.remove(channel);
+            open.remove(entry.key, entry);
+            channel.close();
+        }
+    }
+
+
+    /**
+     * finds what tells a file apart from one put in its place
+     */
+    private static Object identity(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path,
+            BasicFileAttributes.class);
+        if (attributes.fileKey() != null) {
+            return attributes.fileKey();
+        }
+        return attributes.creationTime();
+    }
+
+
+    /**
+     * @return the number of channels actually opened
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * test class for ChannelCache
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ChannelCacheTest extends student.TestCase {
+
+    private Path file;
+    private Path other;
+
+    /**
+     * sets up for tests
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void setUp() throws IOException {
+        file = new File("cached.bin").toPath();
+        other = new File("cachedOther.bin").toPath();
+        Files.write(file, new byte[] { 1, 2, 3, 4 });
+        Files.write(other, new byte[] { 9, 8 });
+    }
+
+
+    /**
+     * removes the files
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(other);
+    }
+
+
+    /**
+     * tests that one channel is shared and closed after its last user
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testShared() throws IOException {
+        ChannelCache cache = new ChannelCache();
+        FileChannel first = cache.open(file, StandardOpenOption.READ);
+        FileChannel second = cache.open(file.toAbsolutePath(),
+            StandardOpenOption.READ);
+        assertTrue(first == second);
+        assertEquals(1, cache.getOpened());
+
+        // other options get a channel of their own
+        FileChannel writer = cache.open(file, StandardOpenOption.WRITE);
+        assertFalse(first == writer);
+        cache.release(writer);
+        assertFalse(writer.isOpen());
+
+        cache.release(first);
+        assertTrue(second.isOpen());
+        cache.release(second);
+        assertFalse(second.isOpen());
+        FileChannel again = cache.open(file, StandardOpenOption.READ);
+        assertFalse(first == again);
+        cache.release(again);
+    }
+
+
+    /**
+     * tests that a file replaced while open gets a new channel, and the
+     * old one still reads the old file
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testReplaced() throws IOException {
+        ChannelCache cache = new ChannelCache();
+        FileChannel old = cache.open(file, StandardOpenOption.READ);
+        Files.move(other, file, StandardCopyOption.REPLACE_EXISTING);
+        FileChannel current = cache.open(file, StandardOpenOption.READ);
+        assertFalse(old == current);
+        assertEquals(4, old.size());
+        ByteBuffer first = ByteBuffer.allocate(1);
+        current.read(first, 0);
+        assertEquals(9, first.get(0));
+        cache.release(old);
+        assertFalse(old.isOpen());
+        assertTrue(current.isOpen());
+        cache.release(current);
+    }
+
+}
@@ -0,0 +1,136 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a block of sorted records by storing each key as the
+ * difference from the key before it, in a variable length of 7 bits per
+ * byte, and the rest of the record as is. Keys are first turned into
+ * unsigned longs that grow with the key, so the keys of a sorted run
+ * give small differences. Only the first 8 bytes of a byte key are
+ * delta coded, the rest stay with the record. Unsorted blocks still
+ * decode correctly, they just do not shrink.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class DeltaKeyCodec implements BlockCodec {
+
+    private static final int MAX_VARINT = 10;
+
+    private RecordFormat format;
+    private int width;
+    private int keyOffset;
+    private int prefix; // the key bytes that are delta coded
+    private int tail; // the record bytes after them
+    private int unused; // the low bits a short byte key leaves empty
+
+    /**
+     * constructs a codec for records of the given format
+     * 
+     * @param format
+     *            the layout of the records
+     */
+    public DeltaKeyCodec(RecordFormat format) {
+        this.format = format;
+        width = format.getWidth();
+        keyOffset = format.getKeyOffset();
+        prefix = Math.min(format.getKeyLength(), Long.BYTES);
+        tail = width - keyOffset - prefix;
+        if (format.getKeyType() == RecordFormat.KeyType.BYTES) {
+            unused = (Long.BYTES - prefix) * Byte.SIZE;
+        }
+    }
+
+
+    /**
+     * @param rawBytes
+     *            the size of the block before encoding
+     * @return
+     *         the worst case encoded size, a full varint per key
+     */
+    @Override
+    public int maxEncodedBytes(int rawBytes) {
+        return rawBytes / width * (width - prefix + MAX_VARINT);
+    }
+
+
+    /**
+     * encodes a block of whole records
+     * 
+     * @param src
+     *            the records to encode, read to its limit
+     * @param dst
+     *            the buffer to write to
+     */
+    @Override
+    public void encode(ByteBuffer src, ByteBuffer dst) {
+        long prev = 0;
+        for (int pos = src.position(); pos < src.limit(); pos += width) {
+            long key = getKey(src, pos);
+            long delta = key - prev;
+            prev = key;
+            while ((delta & ~0x7FL) != 0) {
+                dst.put((byte)(delta | 0x80));
+                delta >>>= 7;
+            }
+            dst.put((byte)delta);
+            dst.put(dst.position(), src, pos, keyOffset);
+            dst.put(dst.position() + keyOffset, src, pos + keyOffset + prefix,
+                tail);
+            dst.position(dst.position() + keyOffset + tail);
+        }
+        src.position(src.limit());
+    }
+
+
+    /**
+     * decodes a block of records
+     * 
+     * @param src
+     *            an encoded block, read to its limit
+     * @param dst
+     *            the buffer to write the records to
+     */
+    @Override
+    public void decode(ByteBuffer src, ByteBuffer dst) {
+        long prev = 0;
+        while (src.hasRemaining()) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = src.get();
+                delta |= (b & 0x7FL) << shift;
+                shift += 7;
+            }
+            while (b < 0);
+            prev += delta;
+
+            int pos = dst.position();
+            int in = src.position();
+            dst.put(pos, src, in, keyOffset);
+            putKey(dst, pos, prev);
+            dst.put(pos + keyOffset + prefix, src, in + keyOffset, tail);
+            src.position(in + keyOffset + tail);
+            dst.position(pos + width);
+        }
+    }
+
+
+    /**
+     * reads a key as the format's exact normalized key, which keeps NaN
+     * payloads so they come back exactly. Short byte keys are moved to
+     * the low bytes, so their differences stay small.
+     */
+    private long getKey(ByteBuffer bb, int pos) {
+        return format.exactKey(bb, pos) >>> unused;
+    }
+
+
+    /**
+     * writes back the key that getKey read
+     */
+    private void putKey(ByteBuffer bb, int pos, long value) {
+        format.putExactKey(bb, pos, value << unused);
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * test class for DeltaKeyCodec
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class DeltaKeyCodecTest extends student.TestCase {
+
+    /**
+     * encodes and decodes a block, checking it comes back the same
+     * 
+     * @param codec
+     *            the codec to test
+     * @param raw
+     *            the block
+     * @return
+     *         the encoded size
+     */
+    private int roundTrip(BlockCodec codec, byte[] raw) {
+        ByteBuffer src = ByteBuffer.wrap(raw);
+        ByteBuffer encoded = ByteBuffer.allocate(codec.maxEncodedBytes(
+            raw.length));
+        codec.encode(src, encoded);
+        encoded.flip();
+        int size = encoded.remaining();
+
+        ByteBuffer decoded = ByteBuffer.allocate(raw.length);
+        codec.decode(encoded, decoded);
+        assertEquals(raw.length, decoded.position());
+        assertTrue(Arrays.equals(raw, decoded.array()));
+        return size;
+    }
+
+
+    /**
+     * tests sorted default records, including negative keys and a NaN
+     * with a payload
+     */
+    public void testSortedDoubles() {
+        ByteBuffer bb = ByteBuffer.allocate(ByteFile.BYTES_PER_BLOCK);
+        for (int i = 0; i < ByteFile.RECORDS_PER_BLOCK - 1; i++) {
+            bb.putLong(i * 7919L);
+            bb.putDouble((i - 200) * 0.5);
+        }
+        bb.putLong(-1);
+        bb.putLong(0x7FF0000000000123L);
+        int size = roundTrip(new DeltaKeyCodec(RecordFormat.DEFAULT), bb
+            .array());
+        assertTrue(size < ByteFile.BYTES_PER_BLOCK);
+    }
+
+
+    /**
+     * tests that close long keys take a byte or two each
+     */
+    public void testSortedLongs() {
+        RecordFormat format = new RecordFormat(16, 0, 8,
+            RecordFormat.KeyType.LONG);
+        ByteBuffer bb = ByteBuffer.allocate(ByteFile.BYTES_PER_BLOCK);
+        for (int i = 0; i < ByteFile.RECORDS_PER_BLOCK; i++) {
+            bb.putLong(1000000L + i * 3);
+            bb.putLong(i);
+        }
+        int size = roundTrip(new DeltaKeyCodec(format), bb.array());
+        assertTrue(size < ByteFile.RECORDS_PER_BLOCK * 10);
+    }
+
+
+    /**
+     * tests unsorted records, which must still come back
+     */
+    public void testUnsorted() {
+        byte[] raw = new byte[ByteFile.BYTES_PER_BLOCK];
+        new Random(18).nextBytes(raw);
+        roundTrip(new DeltaKeyCodec(RecordFormat.DEFAULT), raw);
+    }
+
+
+    /**
+     * tests the other key types, with keys in the middle of the record
+     */
+    public void testKeyTypes() {
+        Random random = new Random(18);
+        RecordFormat[] formats = {
+            new RecordFormat(32, 4, 4, RecordFormat.KeyType.INT),
+            new RecordFormat(24, 8, 8, RecordFormat.KeyType.LONG),
+            new RecordFormat(20, 2, 3, RecordFormat.KeyType.BYTES),
+            new RecordFormat(24, 4, 12, RecordFormat.KeyType.BYTES) };
+        for (RecordFormat format : formats) {
+            byte[] raw = new byte[format.getWidth() * 100];
+            random.nextBytes(raw);
+            roundTrip(new DeltaKeyCodec(format), raw);
+        }
+    }
+
+}
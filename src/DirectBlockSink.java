@@ -0,0 +1,163 @@
+import com.sun.nio.file.ExtendedOpenOption;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes blocks with direct I/O, so runs that are written once and read
+ * once do not fill the page cache. Direct writes have to cover whole
+ * aligned units of the file, so the units this sink fills completely
+ * are written directly, and a unit it only shares part of, at the start
+ * or end of its range, goes through the caller's channel. That way
+ * several sinks can still write disjoint ranges of one file at once.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class DirectBlockSink implements BlockSink {
+
+    private FileChannel channel; // for units only partly written
+    private FileChannel direct;
+    private int alignment;
+    private int blockBytes;
+    private ByteBuffer aligned;
+    private ByteBuffer buffer; // the part of aligned being filled
+    private long base; // the file position of aligned's first byte
+    private int offset; // where buffer starts in aligned
+    private int written; // bytes of aligned already written or not ours
+
+    /**
+     * constructs a sink writing from the given offset
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param file
+     *            the path of the same file, opened again for direct I/O
+     * @param start
+     *            the offset of the first block
+     * @param blockBytes
+     *            the size of one block
+     * @throws IOException
+     *             if the file can not be opened for direct I/O
+     */
+    public DirectBlockSink(
+        FileChannel channel,
+        Path file,
+        long start,
+        int blockBytes)
+        throws IOException {
+        this.channel = channel;
+        direct = ChannelCache.shared().open(file, StandardOpenOption.WRITE,
+            ExtendedOpenOption.DIRECT);
+        alignment = DirectBlockSource.alignment(file);
+        this.blockBytes = blockBytes;
+        aligned = DirectBlockSource.acquire(DirectBlockSource.roundUp(
+            blockBytes, alignment) + alignment, alignment);
+        base = start - start % alignment;
+        written = (int)(start - base);
+        next(written);
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+
+    /**
+     * writes the filled part of the buffer, up to the last whole unit,
+     * and carries the rest over into the next block
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        int filled = offset + buffer.position();
+
+        // finish a unit that started before this sink did, or was
+        // started through the page cache
+        if (written % alignment != 0) {
+            int unitEnd = Math.min(DirectBlockSource.roundUp(written,
+                alignment), filled);
+            write(channel, written, unitEnd);
+        }
+        int whole = filled - filled % alignment;
+        if (whole > written) {
+            write(direct, written, whole);
+        }
+
+        // move the last partial unit to the front
+        if (whole > 0) {
+            aligned.put(0, aligned, whole, filled - whole);
+            base += whole;
+            written = Math.max(written - whole, 0);
+        }
+        next(filled - whole);
+    }
+
+
+    /**
+     * @return the file position the next record will be written to
+     */
+    @Override
+    public long position() {
+        return base + offset + buffer.position();
+    }
+
+
+    /**
+     * writes what is left through the channel, which is left open, and
+     * gives back the direct channel and the buffer, once
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (direct == null) {
+            return;
+        }
+        flush();
+        write(channel, written, offset);
+        ChannelCache.shared().release(direct);
+        BufferPool.shared().release(aligned);
+        direct = null;
+        aligned = null;
+        buffer = ByteBuffer.allocate(0);
+    }
+
+
+    /**
+     * writes part of the aligned buffer to the same place in the file
+     */
+    private void write(FileChannel to, int from, int until)
+        throws IOException {
+        ByteBuffer part = aligned.duplicate();
+        part.limit(until);
+        part.position(from);
+        while (part.hasRemaining()) {
+            to.write(part, base + part.position());
+        }
+        written = Math.max(written, until);
+    }
+
+
+    /**
+     * hands out the next block, starting at the given place in aligned
+     */
+    private void next(int start) {
+        offset = start;
+        aligned.limit(offset + blockBytes);
+        aligned.position(offset);
+        buffer = aligned.slice();
+        aligned.clear();
+    }
+
+}
@@ -0,0 +1,171 @@
+import com.sun.nio.file.ExtendedOpenOption;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a range of a file one block at a time with direct I/O, so the
+ * data goes straight to the buffer without passing through the page
+ * cache. Direct reads have to start on the file system's alignment and
+ * be whole units of it, so each block is read as the aligned units that
+ * cover it and handed out as the records inside them.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class DirectBlockSource implements BlockSource {
+
+    private FileChannel channel;
+    private ByteBuffer aligned;
+    private int alignment;
+    private int blockBytes;
+    private long position;
+    private long end;
+    private int recordBytes;
+
+    /**
+     * constructs a source over part of a file
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param blockBytes
+     *            the number of bytes of records read at a time
+     * @param recordBytes
+     *            the width of one record
+     * @throws IOException
+     *             if the file can not be opened for direct I/O
+     */
+    public DirectBlockSource(
+        String filename,
+        long start,
+        long end,
+        int blockBytes,
+        int recordBytes)
+        throws IOException {
+        Path file = Paths.get(filename);
+        channel = ChannelCache.shared().open(file, StandardOpenOption.READ,
+            ExtendedOpenOption.DIRECT);
+        alignment = alignment(file);
+        aligned = acquire(roundUp(blockBytes, alignment) + alignment,
+            alignment);
+        this.blockBytes = blockBytes;
+        position = start;
+        this.end = Math.min(end, channel.size());
+        this.recordBytes = recordBytes;
+    }
+
+
+    /**
+     * reads the aligned units holding the next block, never past the end
+     * of the range
+     * 
+     * @return
+     *         the block, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        long left = end - position;
+        if (left < recordBytes) {
+            return null;
+        }
+        long base = position - position % alignment;
+        int lead = (int)(position - base);
+        int len = (int)Math.min(blockBytes, left);
+        aligned.clear();
+        aligned.limit(roundUp(lead + len, alignment));
+
+        // a short read is the end of the file, and leaves the next
+        // read unaligned
+        while (aligned.hasRemaining()) {
+            if (channel.read(aligned, base + aligned.position()) <= 0
+                || aligned.position() % alignment != 0) {
+                break;
+            }
+        }
+        len = Math.min(len, aligned.position() - lead);
+        len -= len % recordBytes;
+        if (len <= 0) {
+            return null;
+        }
+        aligned.limit(lead + len);
+        aligned.position(lead);
+        position += len;
+        return aligned;
+    }
+
+
+    /**
+     * gives back the file and the buffer, once
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (aligned != null) {
+            ChannelCache.shared().release(channel);
+            BufferPool.shared().release(aligned);
+            aligned = null;
+        }
+    }
+
+
+    /**
+     * finds the alignment direct I/O needs on a file's file system
+     * 
+     * @param file
+     *            the file
+     * @return
+     *         the alignment in bytes
+     * @throws IOException
+     *             if the file system can not be found
+     */
+    static int alignment(Path file) throws IOException {
+        return (int)Files.getFileStore(file).getBlockSize();
+    }
+
+
+    /**
+     * takes a buffer whose memory starts on the alignment, from the
+     * shared pool unless the alignment is coarser than the pool's
+     * 
+     * @param bytes
+     *            the capacity
+     * @param alignment
+     *            the alignment in bytes, a power of two
+     * @return
+     *         the buffer
+     */
+    static ByteBuffer acquire(int bytes, int alignment) {
+        if (alignment <= BufferPool.ALIGNMENT) {
+            return BufferPool.shared().acquire(bytes);
+        }
+        return BufferPool.allocate(bytes, alignment);
+    }
+
+
+    /**
+     * rounds a size up to a whole number of units
+     * 
+     * @param bytes
+     *            the size
+     * @param unit
+     *            the unit
+     * @return
+     *         the smallest multiple of unit that is at least bytes
+     */
+    static int roundUp(int bytes, int unit) {
+        return (bytes + unit - 1) / unit * unit;
+    }
+
+}
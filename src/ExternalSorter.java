@@ -0,0 +1,139 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sorts a stream of records into another stream without an input file.
+ * Runs are formed while the data arrives and spilled to a scratch file,
+ * merged down in scratch until one pass is left, and that last pass is
+ * written straight to the output. The scratch files are deleted after.
+ * Each pass writes to a new file in whichever scratch directory holds
+ * the least, so with several directories every one of them is used and
+ * a pass reads one disk while it writes another.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ExternalSorter {
+
+    private SortConfig config;
+    private List<File> scratchDirs = new ArrayList<>();
+
+    /**
+     * constructs a sorter that spills to the config's temp directories,
+     * or the system one when it has none
+     * 
+     * @param config
+     *            the sort settings
+     */
+    public ExternalSorter(SortConfig config) {
+        this.config = config;
+        scratchDirs.addAll(config.getTempDirs());
+        if (scratchDirs.isEmpty()) {
+            scratchDirs.add(new File(System.getProperty("java.io.tmpdir")));
+        }
+    }
+
+
+    /**
+     * constructs a sorter that spills to the given directory
+     * 
+     * @param config
+     *            the sort settings
+     * @param scratchDir
+     *            where runs are written while sorting
+     */
+    public ExternalSorter(SortConfig config, File scratchDir) {
+        this.config = config;
+        scratchDirs.add(scratchDir);
+    }
+
+
+    /**
+     * sorts the records of one stream into another
+     * 
+     * @param in
+     *            the records to sort, read to the end
+     * @param out
+     *            where the sorted records are written
+     * @throws IOException
+     *             if a stream or scratch file error occurs
+     */
+    public void sort(InputStream in, OutputStream out) throws IOException {
+        sort(Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+
+    /**
+     * sorts the records of one channel into another. The channels are
+     * left open.
+     * 
+     * @param in
+     *            the records to sort, read to the end
+     * @param out
+     *            where the sorted records are written
+     * @throws IOException
+     *             if a channel or scratch file error occurs
+     */
+    public void sort(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException {
+        RecordFormat format = config.getRecordFormat();
+        ScratchSpace space = new ScratchSpace(scratchDirs);
+        // the stream's length is unknown until its runs are written
+        File runFile = space.create("runs", 0);
+        try {
+            // form runs from the stream as it arrives
+            List<Long> runs;
+            FileChannel spill = FileChannel.open(runFile.toPath(),
+                StandardOpenOption.WRITE);
+            BlockSource source = new ChannelBlockSource(in, config
+                .getBlockBytes(), format.getWidth());
+            BlockCodec codec = config.getRunCodec();
+            BlockSink sink = BlockSink.open(spill, runFile.toPath(), 0,
+                config, codec);
+            if (config.isRadixRuns()) {
+                runs = ByteFile.sortRuns(source, sink, config
+                    .getRadixRecords(), format);
+            }
+            else {
+                runs = ByteFile.selectRuns(source, sink, config
+                    .getHeapRecords(), format, config.isStable());
+            }
+            source.close();
+            sink.close();
+            spill.close();
+            space.resize(runFile, sink.position());
+            if (sink.position() == 0) {
+                // an empty stream sorts to an empty stream
+                return;
+            }
+
+            // merge in scratch until the rest fit in one pass
+            while (runs.size() - 1 > config.getFanIn()) {
+                File mergeFile = space.create("merge", runs.get(runs.size()
+                    - 1));
+                runs = ByteFile.mergePass(runs, runFile.getPath(), codec,
+                    mergeFile.getPath(), codec, config).boundaries();
+                space.release(runFile);
+                runFile = mergeFile;
+            }
+
+            // the last pass goes straight to the output
+            ByteFile.mergeGroup(runs, runFile.getPath(), codec,
+                new ChannelBlockSink(out, config.getBlockBytes()), config);
+        }
+        finally {
+            space.close();
+            BufferPool.shared().clear();
+        }
+    }
+
+}
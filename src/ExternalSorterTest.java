@@ -0,0 +1,144 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * test class for ExternalSorter
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ExternalSorterTest extends student.TestCase {
+
+    /**
+     * makes a stream of random default format records
+     * 
+     * @param records
+     *            the number of records
+     * @return
+     *         the serialized records
+     */
+    private byte[] randomRecords(int records) {
+        Random random = new Random(records);
+        ByteBuffer bb = ByteBuffer.allocate(records
+            * ByteFile.BYTES_PER_RECORD);
+        for (int i = 0; i < records; i++) {
+            bb.putLong(i);
+            bb.putDouble(random.nextDouble());
+        }
+        return bb.array();
+    }
+
+
+    /**
+     * checks that the output holds every input record in key order
+     * 
+     * @param input
+     *            the unsorted records
+     * @param output
+     *            the sorted records
+     */
+    private void assertSorted(byte[] input, byte[] output) {
+        assertEquals(input.length, output.length);
+        ByteBuffer bb = ByteBuffer.wrap(output);
+        boolean[] seen = new boolean[input.length
+            / ByteFile.BYTES_PER_RECORD];
+        double prev = Double.NEGATIVE_INFINITY;
+        while (bb.hasRemaining()) {
+            int recID = (int)bb.getLong();
+            double key = bb.getDouble();
+            assertTrue(prev <= key);
+            assertFalse(seen[recID]);
+            seen[recID] = true;
+            prev = key;
+        }
+    }
+
+
+    /**
+     * tests sorting a stream that needs merge passes in scratch
+     * 
+     * @throws IOException
+     *             if a stream error occurs
+     */
+    public void testSort() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        File scratch = new File("sorterScratch");
+        scratch.mkdir();
+        byte[] input = randomRecords(40 * ByteFile.RECORDS_PER_BLOCK + 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExternalSorter(config, scratch).sort(new ByteArrayInputStream(
+            input), out);
+        assertSorted(input, out.toByteArray());
+        assertEquals(0, scratch.list().length);
+        scratch.delete();
+    }
+
+
+    /**
+     * tests sorting with scratch files spread over two directories,
+     * leaving nothing behind in either
+     * 
+     * @throws IOException
+     *             if a stream error occurs
+     */
+    public void testSortTwoDirs() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        File[] scratch = { new File("sorterScratchA"), new File(
+            "sorterScratchB") };
+        for (File dir : scratch) {
+            dir.mkdir();
+        }
+        config.setTempDirs(scratch);
+        byte[] input = randomRecords(40 * ByteFile.RECORDS_PER_BLOCK + 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExternalSorter(config).sort(new ByteArrayInputStream(input), out);
+        assertSorted(input, out.toByteArray());
+        for (File dir : scratch) {
+            assertEquals(0, dir.list().length);
+            dir.delete();
+        }
+    }
+
+
+    /**
+     * tests sorting a stream that fits in a single run, and an empty one
+     * 
+     * @throws IOException
+     *             if a stream error occurs
+     */
+    public void testSortSmall() throws IOException {
+        ExternalSorter sorter = new ExternalSorter(new SortConfig());
+        byte[] input = randomRecords(100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sorter.sort(new ByteArrayInputStream(input), out);
+        assertSorted(input, out.toByteArray());
+
+        out = new ByteArrayOutputStream();
+        sorter.sort(new ByteArrayInputStream(new byte[0]), out);
+        assertEquals(0, out.size());
+    }
+
+
+    /**
+     * tests that a stream ending inside a record is an error
+     */
+    public void testPartialRecord() {
+        ExternalSorter sorter = new ExternalSorter(new SortConfig());
+        Exception thrown = null;
+        try {
+            sorter.sort(new ByteArrayInputStream(new byte[20]),
+                new ByteArrayOutputStream());
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+}
@@ -31,7 +31,9 @@ public class Externalsort {
 
     /**
      * @param args
-     *            Command line file to sort
+     *            Command line file to sort, then optionally the memory
+     *            budget in bytes, the block size in bytes and the max
+     *            merge fan-in
      * @throws IOException
      *             if a file exception occurs
      */
@@ -40,14 +42,25 @@ public class Externalsort {
         /*
          * Input file contains binary data of unsorted "records".
          * A "record" consists of a data (8 bytes) key (8 bytes) pair.
-         * The file will be sorted externally using Replacement Selection and 8 Way Multiway Merge
+         * The file will be sorted externally using Replacement Selection and Multiway Merge
          */
         
-        String fileName = "16blocks.bin";
+        String fileName = args.length > 0 ? args[0] : "16blocks.bin";
+        SortConfig config = new SortConfig();
+        if (args.length > 1) {
+            long memoryBytes = Long.parseLong(args[1]);
+            int blockBytes = args.length > 2
+                ? Integer.parseInt(args[2])
+                : ByteFile.BYTES_PER_BLOCK;
+            int maxFanIn = args.length > 3
+                ? Integer.parseInt(args[3])
+                : Integer.MAX_VALUE;
+            config = new SortConfig(memoryBytes, blockBytes, maxFanIn);
+        }
 
-        ByteFile bf = new ByteFile(fileName, ByteFile.countBlocks(fileName));
-        bf.replacementSelection();
-        bf.multiwayMerge(bf.getRuns(), fileName, "mergeOut.bin");
+        ByteFile bf = new ByteFile(fileName, ByteFile.countBlocks(fileName),
+            config);
+        bf.sort();
         bf.printRecords();
     }
 
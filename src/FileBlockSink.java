@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes blocks with positional writes to a FileChannel, starting at a
+ * given offset. The channel belongs to the caller, so several sinks can
+ * write disjoint ranges of one file at the same time.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class FileBlockSink implements BlockSink {
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long position; // where the buffer's first byte will be written
+
+    /**
+     * constructs a sink writing from the given offset
+     * 
+     * @param channel
+     *            the file to write to
+     * @param start
+     *            the offset of the first block
+     * @param blockBytes
+     *            the size of one block
+     */
+    public FileBlockSink(FileChannel channel, long start, int blockBytes) {
+        this.channel = channel;
+        position = start;
+        buffer = BufferPool.shared().acquire(blockBytes);
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+
+    /**
+     * writes the filled part of the buffer at the sink's position
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * @return the file position the next record will be written to
+     */
+    @Override
+    public long position() {
+        return position + buffer.position();
+    }
+
+
+    /**
+     * writes the last partial block and gives back the buffer, the
+     * channel is left open
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        BufferPool.shared().release(buffer);
+        buffer = ByteBuffer.allocate(0);
+    }
+
+}
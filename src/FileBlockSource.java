@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a range of a file one block at a time through a FileChannel
+ * into a single reused buffer. The buffer comes from the shared pool and
+ * the channel is shared with every other reader of the file.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class FileBlockSource implements BlockSource {
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long position;
+    private long end;
+    private int recordBytes;
+
+    /**
+     * constructs a source over part of a file
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param blockBytes
+     *            the number of bytes read at a time
+     * @param recordBytes
+     *            the width of one record
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    public FileBlockSource(
+        String filename,
+        long start,
+        long end,
+        int blockBytes,
+        int recordBytes)
+        throws IOException {
+        channel = ChannelCache.shared().open(Paths.get(filename),
+            StandardOpenOption.READ);
+        buffer = BufferPool.shared().acquire(blockBytes);
+        position = start;
+        this.end = Math.min(end, channel.size());
+        this.recordBytes = recordBytes;
+    }
+
+
+    /**
+     * reads the next block, never past the end of the range
+     * 
+     * @return
+     *         the block, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        long left = end - position;
+        if (left < recordBytes) {
+            return null;
+        }
+        int len = (int)Math.min(buffer.capacity(), left);
+        len -= len % recordBytes;
+        buffer.clear();
+        buffer.limit(len);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        position += buffer.limit();
+        return buffer.hasRemaining() ? buffer : null;
+    }
+
+
+    /**
+     * gives back the file and the buffer, once
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            ChannelCache.shared().release(channel);
+            BufferPool.shared().release(buffer);
+            buffer = null;
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wraps a sink and describes each run written through it. Records are
+ * looked at once, when their block is flushed or their run ends, so the
+ * sort loops that fill the buffer do not change. The offset and first
+ * key of every block are only recorded when asked for.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class IndexingBlockSink implements BlockSink {
+
+    private BlockSink sink;
+    private RecordFormat format;
+    private List<RunInfo> runs = new ArrayList<>();
+    private int scanned; // bytes of the buffer already looked at
+    private boolean indexBlocks;
+
+    // the run being written
+    private long runStart;
+    private long records;
+    private long minKey;
+    private long maxKey;
+    private long[] blockOffsets = new long[0];
+    private long[] blockKeys = new long[0];
+    private int blocks;
+
+    /**
+     * constructs a sink that describes the runs written to another,
+     * without indexing their blocks
+     * 
+     * @param sink
+     *            the sink to write through, with an empty buffer
+     * @param format
+     *            the layout of the records
+     */
+    public IndexingBlockSink(BlockSink sink, RecordFormat format) {
+        this(sink, format, false);
+    }
+
+
+    /**
+     * constructs a sink that describes the runs written to another
+     * 
+     * @param sink
+     *            the sink to write through, with an empty buffer
+     * @param format
+     *            the layout of the records
+     * @param indexBlocks
+     *            true to record the offset and first key of every block
+     */
+    public IndexingBlockSink(
+        BlockSink sink,
+        RecordFormat format,
+        boolean indexBlocks) {
+        this.sink = sink;
+        this.format = format;
+        this.indexBlocks = indexBlocks;
+        runStart = sink.position();
+    }
+
+
+    /**
+     * @return the runs ended so far
+     */
+    public List<RunInfo> runs() {
+        return runs;
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return sink.buffer();
+    }
+
+
+    /**
+     * indexes the block and writes it out
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        scan();
+        sink.flush();
+        scanned = 0;
+    }
+
+
+    /**
+     * @return the file position the next record will be written to
+     */
+    @Override
+    public long position() {
+        return sink.position();
+    }
+
+
+    /**
+     * @return the file position of the block being filled
+     */
+    @Override
+    public long blockPosition() {
+        return sink.blockPosition();
+    }
+
+
+    /**
+     * ends the run and records its description
+     * 
+     * @return the file position the next run starts at
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public long endRun() throws IOException {
+        scan();
+        long end = sink.endRun();
+        runs.add(new RunInfo(runStart, end - runStart, records, minKey, maxKey,
+            Arrays.copyOf(blockOffsets, blocks), Arrays.copyOf(blockKeys,
+                blocks)));
+
+        runStart = end;
+        records = 0;
+        blocks = 0;
+        scanned = sink.buffer().position();
+        return end;
+    }
+
+
+    /**
+     * ends the last run if it has records and closes the sink
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        scan();
+        if (records > 0) {
+            endRun();
+        }
+        sink.close();
+    }
+
+
+    /**
+     * looks at the records put in the buffer since the last scan
+     */
+    private void scan() {
+        ByteBuffer bb = sink.buffer();
+        int width = format.getWidth();
+        for (int pos = scanned; pos < bb.position(); pos += width) {
+            long key = format.normalizedKey(bb, pos);
+            if (records == 0) {
+                minKey = key;
+                addBlock(runStart, key);
+            }
+            else if (pos == 0) {
+                addBlock(sink.blockPosition(), key);
+            }
+            maxKey = key;
+            records++;
+        }
+        scanned = bb.position();
+    }
+
+
+    /**
+     * records where a block of the run starts, if blocks are indexed
+     */
+    private void addBlock(long offset, long key) {
+        if (!indexBlocks) {
+            return;
+        }
+        if (blocks == blockOffsets.length) {
+            int grown = Math.max(16, blocks * 2);
+            blockOffsets = Arrays.copyOf(blockOffsets, grown);
+            blockKeys = Arrays.copyOf(blockKeys, grown);
+        }
+        blockOffsets[blocks] = offset;
+        blockKeys[blocks] = key;
+        blocks++;
+    }
+
+}
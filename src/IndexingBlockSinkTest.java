@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * test class for IndexingBlockSink
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class IndexingBlockSinkTest extends student.TestCase {
+
+    private File sinkFile;
+    private FileChannel channel;
+    private RecordFormat format = RecordFormat.DEFAULT;
+
+    /**
+     * opens an empty file to write to
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void setUp() throws IOException {
+        sinkFile = new File("indexingSinkTest.bin");
+        sinkFile.delete();
+        channel = FileChannel.open(sinkFile.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+    }
+
+
+    /**
+     * removes the file
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void tearDown() throws IOException {
+        channel.close();
+        sinkFile.delete();
+    }
+
+
+    /**
+     * writes records with keys first, first + 1, ... through a sink
+     */
+    private void write(BlockSink sink, int first, int count)
+        throws IOException {
+        for (int i = first; i < first + count; i++) {
+            sink.buffer().putLong(-i);
+            sink.buffer().putDouble(i);
+            if (!sink.buffer().hasRemaining()) {
+                sink.flush();
+            }
+        }
+    }
+
+
+    /**
+     * @return the normalized key of a record with the given key
+     */
+    private long key(double key) {
+        ByteBuffer record = ByteBuffer.allocate(format.getWidth());
+        record.putLong(0);
+        record.putDouble(key);
+        return format.normalizedKey(record, 0);
+    }
+
+
+    /**
+     * tests the runs described over plain blocks of four records, the
+     * second run starting part way through a block
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPlainRuns() throws IOException {
+        IndexingBlockSink sink = new IndexingBlockSink(new FileBlockSink(
+            channel, 0, 64), format, true);
+        write(sink, 0, 10);
+        assertEquals(160, sink.endRun());
+        write(sink, 100, 5);
+        sink.close();
+
+        List<RunInfo> runs = sink.runs();
+        assertEquals(2, runs.size());
+        RunInfo first = runs.get(0);
+        assertEquals(0, first.getOffset());
+        assertEquals(160, first.getLength());
+        assertEquals(10, first.getRecords());
+        assertEquals(key(0), first.getMinKey());
+        assertEquals(key(9), first.getMaxKey());
+        assertEquals(3, first.getBlocks());
+        assertEquals(64, first.getBlockOffset(1));
+        assertEquals(128, first.getBlockOffset(2));
+        assertEquals(key(8), first.getBlockKey(2));
+
+        RunInfo second = runs.get(1);
+        assertEquals(160, second.getOffset());
+        assertEquals(240, second.getEnd());
+        assertEquals(5, second.getRecords());
+        assertEquals(key(100), second.getMinKey());
+        assertEquals(key(104), second.getMaxKey());
+        assertEquals(2, second.getBlocks());
+        assertEquals(160, second.getBlockOffset(0));
+        assertEquals(key(100), second.getBlockKey(0));
+        assertEquals(192, second.getBlockOffset(1));
+        assertEquals(key(102), second.getBlockKey(1));
+    }
+
+
+    /**
+     * tests that blocks are not indexed unless asked for
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testBlocksNotIndexed() throws IOException {
+        IndexingBlockSink sink = new IndexingBlockSink(new FileBlockSink(
+            channel, 0, 64), format);
+        write(sink, 0, 10);
+        sink.close();
+
+        RunInfo run = sink.runs().get(0);
+        assertEquals(10, run.getRecords());
+        assertEquals(key(0), run.getMinKey());
+        assertEquals(key(9), run.getMaxKey());
+        assertEquals(0, run.getBlocks());
+    }
+
+
+    /**
+     * tests that over compressed frames each block offset is the start
+     * of a frame whose first record has the block's key
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPackedRuns() throws IOException {
+        BlockCodec codec = new LzBlockCodec();
+        IndexingBlockSink sink = new IndexingBlockSink(new PackedBlockSink(
+            channel, 0, 64, codec), format, true);
+        write(sink, 0, 10);
+        long boundary = sink.endRun();
+        write(sink, 100, 7);
+        sink.close();
+        channel.force(true);
+
+        List<RunInfo> runs = sink.runs();
+        assertEquals(2, runs.size());
+        assertEquals(boundary, runs.get(1).getOffset());
+        assertEquals(sinkFile.length(), runs.get(1).getEnd());
+        assertEquals(3, runs.get(0).getBlocks());
+        assertEquals(2, runs.get(1).getBlocks());
+        for (RunInfo run : runs) {
+            for (int b = 0; b < run.getBlocks(); b++) {
+                PackedBlockSource source = new PackedBlockSource(sinkFile
+                    .getPath(), run.getBlockOffset(b), run.getEnd(), 64,
+                    codec);
+                ByteBuffer block = source.nextBlock();
+                assertEquals(run.getBlockKey(b), format.normalizedKey(block,
+                    block.position()));
+                source.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+
+/**
+ * Tournament tree of losers used to merge runs.
+ * Each internal node keeps the run that lost the match played there and
+ * the root keeps the overall winner, so after the winning run advances
+ * only the matches on its path to the root are replayed, about log2(k)
+ * comparisons per output record for any fan-in k. Matches compare the
+ * normalized keys of the runs' current records as unsigned longs.
+ * Equal keys go to the run with the lower index, so when runs are given
+ * in input order the merge is stable.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+class LoserTree {
+    private Run[] runs; // the runs at the leaves
+    private long[] keys; // normalized key of each run's current record
+    private RecordFormat format;
+    private boolean exact; // normalized keys alone decide the order
+    private boolean[] done; // true once a run has no records left
+    private int[] tree; // tree[0] is the winner, the rest hold losers
+    private int k; // number of leaves
+    private int live; // runs that still have records
+
+    /**
+     * constructs the tree for default format runs
+     * 
+     * @param runs
+     *            the runs to merge, each positioned at its first record
+     * @param count
+     *            the number of runs used from the array
+     * @throws IOException
+     *             if an empty run can not be closed
+     */
+    LoserTree(Run[] runs, int count) throws IOException {
+        this(runs, count, RecordFormat.DEFAULT);
+    }
+
+
+    /**
+     * constructs the tree and plays the first tournament
+     * 
+     * @param runs
+     *            the runs to merge, each positioned at its first record
+     *            unless it is empty
+     * @param count
+     *            the number of runs used from the array
+     * @param format
+     *            the layout of the runs' records
+     * @throws IOException
+     *             if an empty run can not be closed
+     */
+    LoserTree(Run[] runs, int count, RecordFormat format)
+        throws IOException {
+        this.runs = runs;
+        this.format = format;
+        exact = format.isNormalizedExact();
+        k = count;
+        live = count;
+        keys = new long[k];
+        done = new boolean[k];
+        tree = new int[Math.max(k, 1)];
+        for (int i = 0; i < k; i++) {
+            if (runs[i].hasRecord()) {
+                keys[i] = normalize(i);
+            }
+            else {
+                // an empty run is done before it starts
+                runs[i].close();
+                done[i] = true;
+                live--;
+            }
+        }
+
+        // play every match bottom up, keeping the loser at each node
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int node = k - 1; node >= 1; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (beats(left, right)) {
+                winners[node] = left;
+                tree[node] = right;
+            }
+            else {
+                winners[node] = right;
+                tree[node] = left;
+            }
+        }
+        tree[0] = k > 1 ? winners[1] : 0;
+    }
+
+
+    /**
+     * @return true if every run has been used up
+     */
+    public boolean isEmpty() {
+        return live == 0;
+    }
+
+
+    /**
+     * @return the run holding the smallest current record
+     */
+    public Run getMin() {
+        return runs[tree[0]];
+    }
+
+
+    /**
+     * moves the winning run to its next record, closing it when it is
+     * finished, and replays its path to the root
+     * 
+     * @throws IOException
+     *             if the run can not be read
+     */
+    public void advance() throws IOException {
+        int winner = tree[0];
+        Run run = runs[winner];
+        if (run.advanceRecord()) {
+            keys[winner] = normalize(winner);
+        }
+        else {
+            run.close();
+            done[winner] = true;
+            live--;
+        }
+
+        // the winner climbs until it loses a match
+        for (int node = (winner + k) / 2; node >= 1; node /= 2) {
+            if (beats(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+
+    /**
+     * @param leaf
+     *            the run to read
+     * @return the normalized key of the run's current record
+     */
+    private long normalize(int leaf) {
+        return format.normalizedKey(runs[leaf].buffer(), runs[leaf]
+            .recordPosition());
+    }
+
+
+    /**
+     * plays one match, ties going to the lower leaf
+     * 
+     * @param a
+     *            the first leaf
+     * @param b
+     *            the second leaf
+     * @return true if leaf a wins over leaf b
+     */
+    private boolean beats(int a, int b) {
+        if (done[a]) {
+            return false;
+        }
+        if (done[b]) {
+            return true;
+        }
+        int cmp = Long.compareUnsigned(keys[a], keys[b]);
+        if (cmp == 0 && !exact) {
+            cmp = format.compare(runs[a].buffer(), runs[a].recordPosition(),
+                runs[b].buffer(), runs[b].recordPosition());
+        }
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+}
@@ -0,0 +1,88 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * test class for LoserTree
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class LoserTreeTest extends student.TestCase {
+
+    private File runsFile;
+
+    /**
+     * writes a file of five sorted runs with different lengths,
+     * run i holding the keys i, i + 5, i + 10 ...
+     * 
+     * @throws IOException
+     *             if there is an error with the file
+     */
+    public void setUp() throws IOException {
+        runsFile = new File("loserTreeRuns.bin");
+        runsFile.delete();
+        RandomAccessFile raf = new RandomAccessFile(runsFile, "rw");
+        for (int run = 0; run < 5; run++) {
+            for (int key = run; key < 100 + run * 7; key += 5) {
+                raf.writeLong(run);
+                raf.writeDouble(key);
+            }
+        }
+        raf.close();
+    }
+
+
+    /**
+     * tests that the tree returns every record in key order
+     * 
+     * @throws IOException
+     *             if there is an error with the file
+     */
+    public void testMerge() throws IOException {
+        Run[] runs = new Run[5];
+        long start = 0;
+        int total = 0;
+        for (int run = 0; run < 5; run++) {
+            int count = (100 + run * 7 - run + 4) / 5;
+            total += count;
+            long end = start + count * ByteFile.BYTES_PER_RECORD;
+            runs[run] = new Run(start, end, runsFile.getName());
+            start = end;
+        }
+
+        LoserTree tree = new LoserTree(runs, runs.length);
+        double prev = Double.NEGATIVE_INFINITY;
+        int merged = 0;
+        while (!tree.isEmpty()) {
+            assertTrue(prev <= tree.getMin().getKey());
+            assertEquals((long)tree.getMin().getKey() % 5, tree.getMin()
+                .getRecID());
+            prev = tree.getMin().getKey();
+            merged++;
+            tree.advance();
+        }
+        assertEquals(total, merged);
+        runsFile.delete();
+    }
+
+
+    /**
+     * tests a tree with a single run
+     * 
+     * @throws IOException
+     *             if there is an error with the file
+     */
+    public void testSingleRun() throws IOException {
+        Run[] runs = { new Run((long)0, (long)320, runsFile.getName()) };
+        LoserTree tree = new LoserTree(runs, 1);
+        int merged = 0;
+        while (!tree.isEmpty()) {
+            merged++;
+            tree.advance();
+        }
+        assertEquals(20, merged);
+        runsFile.delete();
+    }
+
+}
@@ -0,0 +1,157 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A small LZ77 codec in the style of LZ4. Each sequence is a token byte
+ * holding a literal length and a match length, then the literals, then
+ * a two byte offset back to where the match is copied from. Lengths of
+ * 15 or more continue in following bytes. The last sequence has only
+ * literals. Matches are found through a hash table of 4 byte strings,
+ * so encoding is a single pass with no searching.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class LzBlockCodec implements BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+
+    // match tables, one per thread so a codec can be shared
+    private ThreadLocal<int[]> tables = ThreadLocal.withInitial(
+        () -> new int[1 << HASH_BITS]);
+
+    /**
+     * @param rawBytes
+     *            the size of the block before encoding
+     * @return
+     *         the worst case encoded size, all literals
+     */
+    @Override
+    public int maxEncodedBytes(int rawBytes) {
+        return rawBytes + rawBytes / 255 + 16;
+    }
+
+
+    /**
+     * encodes a block
+     * 
+     * @param src
+     *            the block to encode, read to its limit
+     * @param dst
+     *            the buffer to write to
+     */
+    @Override
+    public void encode(ByteBuffer src, ByteBuffer dst) {
+        int base = src.position();
+        int end = src.limit();
+        // the table holds one past each string's position, 0 for none
+        int[] table = tables.get();
+        Arrays.fill(table, 0);
+        int anchor = base;
+        int i = base;
+        while (i + MIN_MATCH <= end) {
+            int seq = src.getInt(i);
+            int h = (seq * 0x9E3779B1) >>> (32 - HASH_BITS);
+            int ref = table[h] - 1 + base;
+            table[h] = i - base + 1;
+            if (ref < base || i - ref > MAX_OFFSET || src.getInt(ref) != seq) {
+                i++;
+                continue;
+            }
+            int len = MIN_MATCH;
+            while (i + len < end && src.get(ref + len) == src.get(i + len)) {
+                len++;
+            }
+            writeSequence(src, anchor, i - anchor, dst, len - MIN_MATCH);
+            dst.put((byte)(i - ref));
+            dst.put((byte)((i - ref) >>> 8));
+            writeLength(dst, len - MIN_MATCH);
+            i += len;
+            anchor = i;
+        }
+        writeSequence(src, anchor, end - anchor, dst, 0);
+        src.position(end);
+    }
+
+
+    /**
+     * writes a token and its literals
+     */
+    private void writeSequence(
+        ByteBuffer src,
+        int from,
+        int literals,
+        ByteBuffer dst,
+        int match) {
+        dst.put((byte)((Math.min(literals, 15) << 4) | Math.min(match, 15)));
+        writeLength(dst, literals);
+        dst.put(dst.position(), src, from, literals);
+        dst.position(dst.position() + literals);
+    }
+
+
+    /**
+     * writes what is left of a length over the 15 held in the token
+     */
+    private void writeLength(ByteBuffer dst, int len) {
+        if (len < 15) {
+            return;
+        }
+        len -= 15;
+        while (len >= 255) {
+            dst.put((byte)255);
+            len -= 255;
+        }
+        dst.put((byte)len);
+    }
+
+
+    /**
+     * decodes a block
+     * 
+     * @param src
+     *            an encoded block, read to its limit
+     * @param dst
+     *            the buffer to write the block to
+     */
+    @Override
+    public void decode(ByteBuffer src, ByteBuffer dst) {
+        while (src.hasRemaining()) {
+            int token = src.get() & 0xFF;
+            int literals = readLength(src, token >>> 4);
+            dst.put(dst.position(), src, src.position(), literals);
+            dst.position(dst.position() + literals);
+            src.position(src.position() + literals);
+            if (!src.hasRemaining()) {
+                break;
+            }
+            int offset = (src.get() & 0xFF) | ((src.get() & 0xFF) << 8);
+            int len = readLength(src, token & 0x0F) + MIN_MATCH;
+
+            // copy a byte at a time, a match may overlap its own output
+            int from = dst.position() - offset;
+            for (int k = 0; k < len; k++) {
+                dst.put(dst.get(from + k));
+            }
+        }
+    }
+
+
+    /**
+     * reads the rest of a length that starts in the token
+     */
+    private int readLength(ByteBuffer src, int len) {
+        if (len == 15) {
+            int b;
+            do {
+                b = src.get() & 0xFF;
+                len += b;
+            }
+            while (b == 255);
+        }
+        return len;
+    }
+
+}
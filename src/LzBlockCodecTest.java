@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * test class for LzBlockCodec
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class LzBlockCodecTest extends student.TestCase {
+
+    private LzBlockCodec codec;
+
+    /**
+     * creates the codec
+     */
+    public void setUp() {
+        codec = new LzBlockCodec();
+    }
+
+
+    /**
+     * encodes and decodes a block, checking it comes back the same
+     * 
+     * @param raw
+     *            the block
+     * @return
+     *         the encoded size
+     */
+    private int roundTrip(byte[] raw) {
+        ByteBuffer src = ByteBuffer.wrap(raw);
+        ByteBuffer encoded = ByteBuffer.allocate(codec.maxEncodedBytes(
+            raw.length));
+        codec.encode(src, encoded);
+        assertFalse(src.hasRemaining());
+        encoded.flip();
+        int size = encoded.remaining();
+
+        ByteBuffer decoded = ByteBuffer.allocate(raw.length);
+        codec.decode(encoded, decoded);
+        assertEquals(raw.length, decoded.position());
+        assertTrue(Arrays.equals(raw, decoded.array()));
+        return size;
+    }
+
+
+    /**
+     * tests blocks that do not compress
+     */
+    public void testRandom() {
+        Random random = new Random(17);
+        for (int len : new int[] { 0, 1, 4, 15, 16, 300, 8192 }) {
+            byte[] raw = new byte[len];
+            random.nextBytes(raw);
+            assertTrue(roundTrip(raw) <= codec.maxEncodedBytes(len));
+        }
+    }
+
+
+    /**
+     * tests blocks with long matches and overlapping copies
+     */
+    public void testRepeats() {
+        byte[] raw = new byte[8192];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte)(i % 3);
+        }
+        assertTrue(roundTrip(raw) < 64);
+
+        raw = new byte[8192];
+        assertTrue(roundTrip(raw) < 64);
+    }
+
+
+    /**
+     * tests a block of sorted records, like a run
+     */
+    public void testSortedRecords() {
+        ByteBuffer bb = ByteBuffer.allocate(ByteFile.BYTES_PER_BLOCK);
+        for (int i = 0; i < ByteFile.RECORDS_PER_BLOCK; i++) {
+            bb.putLong(i / 4);
+            bb.putDouble(i / 16);
+        }
+        assertTrue(roundTrip(bb.array()) < ByteFile.BYTES_PER_BLOCK / 2);
+    }
+
+}
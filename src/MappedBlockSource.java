@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a range of a file through memory mapped windows, so records are
+ * read straight from the page cache without a read call or a copy.
+ * A single mapping is limited to 2 GB, so larger ranges are mapped one
+ * window at a time; old windows are unmapped when they are collected.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class MappedBlockSource implements BlockSource {
+
+    /**
+     * the largest window mapped at once
+     */
+    static final int MAX_WINDOW = 1 << 30;
+
+    private FileChannel channel;
+    private long position;
+    private long end;
+    private int window;
+    private int recordBytes;
+
+    /**
+     * constructs a source over part of a file
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param window
+     *            the most bytes mapped at once
+     * @param recordBytes
+     *            the width of one record
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    public MappedBlockSource(
+        String filename,
+        long start,
+        long end,
+        int window,
+        int recordBytes)
+        throws IOException {
+        channel = ChannelCache.shared().open(Paths.get(filename),
+            StandardOpenOption.READ);
+        position = start;
+        this.end = Math.min(end, channel.size());
+        this.window = window - window % recordBytes;
+        this.recordBytes = recordBytes;
+    }
+
+
+    /**
+     * maps the next window of the range
+     * 
+     * @return
+     *         the mapped window, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        long left = end - position;
+        if (left < recordBytes) {
+            return null;
+        }
+        int len = (int)Math.min(window, left);
+        len -= len % recordBytes;
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+            position, len);
+        position += len;
+        return mapped;
+    }
+
+
+    /**
+     * gives back the file, once; the mapping stays valid until
+     * collected
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            ChannelCache.shared().release(channel);
+            channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The order a set of runs will be merged in, worked out from their
+ * lengths before any data is read. Like a Huffman code, the smallest runs
+ * are merged first so the bytes that get rewritten the most are the
+ * fewest. The first merge is padded with empty runs, in effect taking
+ * fewer real runs, so that every later merge uses the full fan-in.
+ * 
+ * Runs are numbered 0 to getRuns() - 1 in file order, and each step's
+ * output takes the next number. Steps are grouped into waves: a step's
+ * inputs all come from earlier waves, so the steps of a wave can merge
+ * at the same time. The last step produces the sorted file.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class MergePlan {
+
+    private int runs;
+    private long inputBytes;
+    private List<Step> steps = new ArrayList<>();
+
+    /**
+     * one merge of the plan
+     */
+    public static class Step {
+
+        private int[] inputs;
+        private long bytes;
+        private int wave;
+
+        /**
+         * constructs a step
+         * 
+         * @param inputs
+         *            the numbers of the runs merged, in file order
+         * @param bytes
+         *            the bytes the merged run holds
+         * @param wave
+         *            the wave the step runs in, from 1
+         */
+        Step(int[] inputs, long bytes, int wave) {
+            this.inputs = inputs;
+            this.bytes = bytes;
+            this.wave = wave;
+        }
+
+
+        /**
+         * @return the numbers of the runs merged, in file order
+         */
+        public int[] getInputs() {
+            return inputs.clone();
+        }
+
+
+        /**
+         * @return the bytes the merged run holds
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+
+        /**
+         * @return the wave the step runs in, from 1
+         */
+        public int getWave() {
+            return wave;
+        }
+
+
+        /**
+         * @return the inputs, size and wave of the step
+         */
+        @Override
+        public String toString() {
+            return String.format("wave %d: merge %s into %d bytes", wave,
+                Arrays.toString(inputs), bytes);
+        }
+
+    }
+
+    /**
+     * a run not merged yet, while planning by size
+     */
+    private static class Live implements Comparable<Live> {
+        private long bytes;
+        private int first; // the first input run, its place in file order
+        private int id;
+        private int wave;
+
+        private Live(long bytes, int first, int id, int wave) {
+            this.bytes = bytes;
+            this.first = first;
+            this.id = id;
+            this.wave = wave;
+        }
+
+
+        /**
+         * orders by size, ties to the first in file order
+         */
+        @Override
+        public int compareTo(Live other) {
+            int cmp = Long.compare(bytes, other.bytes);
+            return cmp != 0 ? cmp : Integer.compare(first, other.first);
+        }
+    }
+
+    /**
+     * plans the merge of runs with the given lengths
+     * 
+     * @param lengths
+     *            the bytes in each run, in file order
+     * @param fanIn
+     *            the most runs merged at once, at least 2
+     * @param adjacent
+     *            true to only merge runs next to each other, which keeps
+     *            equal keys in input order for a stable sort
+     * @return
+     *         the plan
+     */
+    public static MergePlan plan(
+        List<Long> lengths,
+        int fanIn,
+        boolean adjacent) {
+        MergePlan plan = new MergePlan();
+        plan.runs = lengths.size();
+        if (!adjacent) {
+            plan.planSmallest(lengths, fanIn);
+            return plan;
+        }
+
+        // the runs not merged yet, in file order
+        List<Integer> ids = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        List<Integer> waves = new ArrayList<>();
+        for (int i = 0; i < lengths.size(); i++) {
+            ids.add(i);
+            sizes.add(lengths.get(i));
+            waves.add(0);
+            plan.inputBytes += lengths.get(i);
+        }
+
+        // fan-in minus the empty runs the first merge is padded with
+        int width = ids.size() < 2 ? 0 : (ids.size() - 2) % (fanIn - 1) + 2;
+        while (ids.size() > 1) {
+            int[] picked = smallestWindow(sizes, width);
+
+            // replace the picked runs with their merge, where the first was
+            int[] inputs = new int[width];
+            long bytes = 0;
+            int wave = 0;
+            for (int j = width - 1; j >= 0; j--) {
+                int at = picked[j];
+                inputs[j] = ids.remove(at);
+                bytes += sizes.remove(at);
+                wave = Math.max(wave, waves.remove(at));
+            }
+            plan.steps.add(new Step(inputs, bytes, wave + 1));
+            ids.add(picked[0], plan.runs + plan.steps.size() - 1);
+            sizes.add(picked[0], bytes);
+            waves.add(picked[0], wave + 1);
+            width = Math.min(fanIn, ids.size());
+        }
+        return plan;
+    }
+
+
+    /**
+     * plans merges of the smallest runs first, keeping the live runs in a
+     * heap so each step costs a few heap operations. A merged run takes
+     * the file order place of its first input, so its inputs are listed
+     * in file order.
+     */
+    private void planSmallest(List<Long> lengths, int fanIn) {
+        PriorityQueue<Live> live = new PriorityQueue<>();
+        for (int i = 0; i < lengths.size(); i++) {
+            live.add(new Live(lengths.get(i), i, i, 0));
+            inputBytes += lengths.get(i);
+        }
+
+        // fan-in minus the empty runs the first merge is padded with
+        int width = live.size() < 2 ? 0 : (live.size() - 2) % (fanIn - 1) + 2;
+        while (live.size() > 1) {
+            Live[] picked = new Live[width];
+            for (int j = 0; j < width; j++) {
+                picked[j] = live.poll();
+            }
+            Arrays.sort(picked, (a, b) -> Integer.compare(a.first, b.first));
+            int[] inputs = new int[width];
+            long bytes = 0;
+            int wave = 0;
+            for (int j = 0; j < width; j++) {
+                inputs[j] = picked[j].id;
+                bytes += picked[j].bytes;
+                wave = Math.max(wave, picked[j].wave);
+            }
+            steps.add(new Step(inputs, bytes, wave + 1));
+            live.add(new Live(bytes, picked[0].first, runs + steps.size() - 1,
+                wave + 1));
+            width = Math.min(fanIn, live.size());
+        }
+    }
+
+
+    /**
+     * finds the window of neighbouring sizes with the smallest total,
+     * ties to the first
+     * 
+     * @return the indexes of the window in increasing order
+     */
+    private static int[] smallestWindow(List<Long> sizes, int count) {
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        long sum = 0;
+        for (int i = 0; i < sizes.size(); i++) {
+            sum += sizes.get(i);
+            if (i >= count) {
+                sum -= sizes.get(i - count);
+            }
+            if (i >= count - 1 && sum < bestSum) {
+                bestSum = sum;
+                best = i - count + 1;
+            }
+        }
+        int[] picked = new int[count];
+        for (int j = 0; j < count; j++) {
+            picked[j] = best + j;
+        }
+        return picked;
+    }
+
+
+    /**
+     * @return the number of runs the plan starts from
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+
+    /**
+     * @return the merges in the order they are planned
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+
+    /**
+     * @return the number of waves, the most times a record is rewritten
+     */
+    public int getWaves() {
+        return steps.isEmpty() ? 0 : steps.get(steps.size() - 1).getWave();
+    }
+
+
+    /**
+     * @return the bytes of the runs the plan starts from
+     */
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+
+    /**
+     * the bytes every step writes, which is also the bytes they read
+     * 
+     * @return the I/O volume of the merge in each direction
+     */
+    public long getMergedBytes() {
+        long total = 0;
+        for (Step step : steps) {
+            total += step.getBytes();
+        }
+        return total;
+    }
+
+
+    /**
+     * @return the steps one per line, then the bytes merged
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Step step : steps) {
+            out.append(step).append('\n');
+        }
+        return out.append(String.format("%d runs, %d bytes merged", runs,
+            getMergedBytes())).toString();
+    }
+
+}
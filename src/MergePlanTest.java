@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * test class for MergePlan
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class MergePlanTest extends student.TestCase {
+
+    /**
+     * makes a list of run lengths
+     * 
+     * @param lengths
+     *            the lengths
+     * @return
+     *         the list
+     */
+    private List<Long> lengths(long... lengths) {
+        List<Long> list = new ArrayList<>();
+        for (long length : lengths) {
+            list.add(length);
+        }
+        return list;
+    }
+
+
+    /**
+     * tests that nine runs at fan-in 8 merge the two smallest first,
+     * then everything once, instead of rewriting a leftover run
+     */
+    public void testPaddedFirstMerge() {
+        MergePlan plan = MergePlan.plan(lengths(50, 10, 40, 40, 40, 40, 40,
+            40, 20), 8, false);
+        assertEquals(2, plan.getSteps().size());
+        assertEquals("[1, 8]", Arrays.toString(plan.getSteps().get(0)
+            .getInputs()));
+        assertEquals(30, plan.getSteps().get(0).getBytes());
+        assertEquals(8, plan.getSteps().get(1).getInputs().length);
+        assertEquals(2, plan.getWaves());
+        assertEquals(320, plan.getInputBytes());
+        assertEquals(350, plan.getMergedBytes());
+    }
+
+
+    /**
+     * tests that the plan is a Huffman tree over unequal runs
+     */
+    public void testHuffman() {
+        MergePlan plan = MergePlan.plan(lengths(1, 2, 3, 4, 100), 2, false);
+        assertEquals("wave 1: merge [0, 1] into 3 bytes\n"
+            + "wave 2: merge [5, 2] into 6 bytes\n"
+            + "wave 3: merge [6, 3] into 10 bytes\n"
+            + "wave 4: merge [7, 4] into 110 bytes\n"
+            + "5 runs, 129 bytes merged", plan.toString());
+    }
+
+
+    /**
+     * tests that a stable plan only merges neighbouring runs
+     */
+    public void testAdjacent() {
+        MergePlan plan = MergePlan.plan(lengths(1, 100, 2, 3), 2, true);
+        for (MergePlan.Step step : plan.getSteps()) {
+            int[] inputs = step.getInputs();
+            assertEquals(2, inputs.length);
+        }
+        assertEquals("[2, 3]", Arrays.toString(plan.getSteps().get(0)
+            .getInputs()));
+        assertEquals("[0, 1]", Arrays.toString(plan.getSteps().get(1)
+            .getInputs()));
+        assertEquals("[5, 4]", Arrays.toString(plan.getSteps().get(2)
+            .getInputs()));
+    }
+
+
+    /**
+     * tests that one run or none needs no merging
+     */
+    public void testNothingToMerge() {
+        assertEquals(0, MergePlan.plan(lengths(7), 8, false).getSteps()
+            .size());
+        assertEquals(0, MergePlan.plan(lengths(), 8, false).getWaves());
+    }
+
+}
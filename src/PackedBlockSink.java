@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes each block through a codec as a frame: an int length followed
+ * by the encoded block. A negative length marks a block stored as is
+ * because encoding did not make it smaller. The frame lengths chain
+ * together into an index of the run's blocks, so it can be read back a
+ * block at a time. Runs must start on a frame, so endRun() flushes.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class PackedBlockSink implements BlockSink {
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private ByteBuffer frame;
+    private BlockCodec codec;
+    private long position; // where the next frame will be written
+
+    /**
+     * constructs a sink writing frames from the given offset
+     * 
+     * @param channel
+     *            the file to write to
+     * @param start
+     *            the offset of the first frame
+     * @param blockBytes
+     *            the size of one block before encoding
+     * @param codec
+     *            the codec that encodes each block
+     */
+    public PackedBlockSink(
+        FileChannel channel,
+        long start,
+        int blockBytes,
+        BlockCodec codec) {
+        this.channel = channel;
+        this.codec = codec;
+        position = start;
+        buffer = BufferPool.shared().acquire(blockBytes);
+        frame = BufferPool.shared().acquire(Integer.BYTES + Math.max(
+            blockBytes, codec.maxEncodedBytes(blockBytes)));
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+
+    /**
+     * encodes the filled part of the buffer and writes it as a frame
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        frame.clear();
+        frame.position(Integer.BYTES);
+        codec.encode(buffer, frame);
+        int encoded = frame.position() - Integer.BYTES;
+        if (encoded < buffer.limit()) {
+            frame.putInt(0, encoded);
+        }
+        else {
+            buffer.rewind();
+            frame.clear();
+            frame.putInt(-buffer.limit());
+            frame.put(buffer);
+        }
+        frame.flip();
+        while (frame.hasRemaining()) {
+            position += channel.write(frame, position);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * @return the file position of the next frame
+     */
+    @Override
+    public long position() {
+        return position;
+    }
+
+
+    /**
+     * @return the file position the block being filled will be framed at
+     */
+    @Override
+    public long blockPosition() {
+        return position;
+    }
+
+
+    /**
+     * ends the frame being filled so the next run starts a new one
+     * 
+     * @return the file position of the next frame
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public long endRun() throws IOException {
+        flush();
+        return position;
+    }
+
+
+    /**
+     * writes the last partial block and gives back the buffers, the
+     * channel is left open
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (frame != null) {
+            BufferPool.shared().release(buffer);
+            BufferPool.shared().release(frame);
+            buffer = ByteBuffer.allocate(0);
+            frame = null;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a range of frames written by a PackedBlockSink, decoding one
+ * block at a time.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class PackedBlockSource implements BlockSource {
+
+    private FileChannel channel;
+    private ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+    private ByteBuffer frame;
+    private ByteBuffer buffer;
+    private BlockCodec codec;
+    private long position;
+    private long end;
+
+    /**
+     * constructs a source over a range of frames
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the offset of the first frame
+     * @param end
+     *            the byte after the last frame
+     * @param blockBytes
+     *            the size of one block before encoding
+     * @param codec
+     *            the codec the blocks were encoded with
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    public PackedBlockSource(
+        String filename,
+        long start,
+        long end,
+        int blockBytes,
+        BlockCodec codec)
+        throws IOException {
+        channel = ChannelCache.shared().open(Paths.get(filename),
+            StandardOpenOption.READ);
+        this.codec = codec;
+        position = start;
+        this.end = Math.min(end, channel.size());
+        buffer = BufferPool.shared().acquire(blockBytes);
+        frame = BufferPool.shared().acquire(Math.max(blockBytes, codec
+            .maxEncodedBytes(blockBytes)));
+    }
+
+
+    /**
+     * reads and decodes the next frame
+     * 
+     * @return
+     *         the block, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs or a frame is cut off
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        header.clear();
+        readFully(header);
+        int length = header.getInt(0);
+        frame.clear();
+        frame.limit(Math.abs(length));
+        readFully(frame);
+        frame.flip();
+        if (length < 0) {
+            // stored as is
+            return frame;
+        }
+        buffer.clear();
+        codec.decode(frame, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+
+    /**
+     * fills a buffer from the file at the source's position
+     */
+    private void readFully(ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("run ends part way through a frame");
+            }
+            position += read;
+        }
+    }
+
+
+    /**
+     * gives back the file and the buffers, once
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            ChannelCache.shared().release(channel);
+            BufferPool.shared().release(buffer);
+            BufferPool.shared().release(frame);
+            buffer = null;
+            frame = null;
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a range of a file ahead of the consumer.
+ * A ring of buffers is kept busy with asynchronous reads; when a block
+ * is handed out the buffer before it is reused for the next unread block,
+ * so while a run works through one block the following ones are already
+ * on their way and nextBlock() only waits if the disk fell behind. The
+ * file's channel comes from the shared ChannelCache and the reads run on
+ * a small pool of threads shared by every source, so a merge of many
+ * runs opens its file once and does not start a thread per run.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class PrefetchBlockSource implements BlockSource {
+
+    private static final ExecutorService READERS = Executors
+        .newFixedThreadPool(Math.max(4, Runtime.getRuntime()
+            .availableProcessors()), task -> {
+                Thread thread = new Thread(task, "prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private FileChannel channel;
+    private ByteBuffer[] buffers;
+    private Future<Integer>[] reads; // null once the range is used up
+    private long next; // the offset of the next block to request
+    private long end;
+    private int recordBytes;
+    private int current = -1; // the buffer handed out last
+
+    /**
+     * constructs a source and starts reading its first blocks
+     * 
+     * @param filename
+     *            the file to read
+     * @param start
+     *            the first byte of the range
+     * @param end
+     *            the byte after the range
+     * @param blockBytes
+     *            the number of bytes read at a time
+     * @param depth
+     *            the number of blocks kept in memory, at least 2
+     * @param recordBytes
+     *            the width of one record
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public PrefetchBlockSource(
+        String filename,
+        long start,
+        long end,
+        int blockBytes,
+        int depth,
+        int recordBytes)
+        throws IOException {
+        channel = ChannelCache.shared().open(Paths.get(filename),
+            StandardOpenOption.READ);
+        next = start;
+        this.end = Math.min(end, channel.size());
+        this.recordBytes = recordBytes;
+        buffers = new ByteBuffer[depth];
+        reads = new Future[depth];
+        for (int i = 0; i < depth; i++) {
+            buffers[i] = BufferPool.shared().acquire(blockBytes);
+            request(i);
+        }
+    }
+
+
+    /**
+     * starts reading the next block of the range into a buffer
+     * 
+     * @param index
+     *            the buffer to fill
+     */
+    private void request(int index) {
+        long left = end - next;
+        if (left < recordBytes) {
+            reads[index] = null;
+            return;
+        }
+        ByteBuffer buffer = buffers[index];
+        int len = (int)Math.min(buffer.capacity(), left);
+        len -= len % recordBytes;
+        buffer.clear();
+        buffer.limit(len);
+        long from = next;
+        next += len;
+        reads[index] = READERS.submit(() -> {
+            // a read may stop short, so finish the block in place
+            int bytesRead = 0;
+            while (bytesRead >= 0 && buffer.hasRemaining()) {
+                bytesRead = channel.read(buffer, from + buffer.position());
+            }
+            return buffer.position();
+        });
+    }
+
+
+    /**
+     * hands out the next block once its read completes, and starts
+     * reading ahead into the buffer of the block before it
+     * 
+     * @return
+     *         the block, or null at the end of the range
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public ByteBuffer nextBlock() throws IOException {
+        if (current >= 0) {
+            request(current);
+        }
+        current = (current + 1) % buffers.length;
+        if (reads[current] == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = buffers[current];
+        try {
+            reads[current].get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        buffer.flip();
+        return buffer.hasRemaining() ? buffer : null;
+    }
+
+
+    /**
+     * gives the file back and, once no read can still be filling them,
+     * the buffers too
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffers == null) {
+            return;
+        }
+        boolean interrupted = false;
+        for (Future<Integer> read : reads) {
+            while (read != null) {
+                try {
+                    read.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    // the data is not wanted
+                    break;
+                }
+            }
+        }
+        ChannelCache.shared().release(channel);
+        for (ByteBuffer buffer : buffers) {
+            BufferPool.shared().release(buffer);
+        }
+        buffers = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LSD radix sort of normalized keys, one byte per pass.
+ * Sorts an array of unsigned long keys together with an array of record
+ * indexes, so the records themselves are only moved once at the end.
+ * Passes over bytes that are the same in every key are skipped. With
+ * more than one thread, each pass counts and scatters equal slices of
+ * the keys in parallel; slices keep their order, so the sort is stable.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+class RadixSort {
+
+    /**
+     * the fewest keys worth splitting across threads
+     */
+    static final int PARALLEL_MIN = 1 << 16;
+
+    private static final int RADIX = 256;
+
+    /**
+     * sorts keys ascending as unsigned longs, moving order with them
+     * 
+     * @param keys
+     *            the normalized keys
+     * @param order
+     *            the index of each key's record
+     * @param n
+     *            the number of keys to sort
+     * @param threads
+     *            the most threads to use
+     */
+    static void sort(long[] keys, int[] order, int n, int threads) {
+        // the bytes that differ somewhere are the only ones worth a pass
+        long varies = 0;
+        for (int i = 1; i < n; i++) {
+            varies |= keys[i] ^ keys[0];
+        }
+
+        int slices = threads > 1 && n >= PARALLEL_MIN ? threads : 1;
+        ExecutorService pool = slices > 1
+            ? Executors.newFixedThreadPool(slices)
+            : null;
+        long[] srcKeys = keys;
+        int[] srcOrder = order;
+        long[] dstKeys = new long[n];
+        int[] dstOrder = new int[n];
+        try {
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                if (((varies >>> shift) & (RADIX - 1)) == 0) {
+                    continue;
+                }
+                pass(srcKeys, srcOrder, dstKeys, dstOrder, n, shift, slices,
+                    pool);
+                long[] tempKeys = srcKeys;
+                srcKeys = dstKeys;
+                dstKeys = tempKeys;
+                int[] tempOrder = srcOrder;
+                srcOrder = dstOrder;
+                dstOrder = tempOrder;
+            }
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        // an odd number of passes leaves the result in the spare arrays
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcOrder, 0, order, 0, n);
+        }
+    }
+
+
+    /**
+     * moves every key to its place by one byte of the key
+     * 
+     * @param srcKeys
+     *            the keys to read
+     * @param srcOrder
+     *            the indexes to read
+     * @param dstKeys
+     *            where the keys go
+     * @param dstOrder
+     *            where the indexes go
+     * @param n
+     *            the number of keys
+     * @param shift
+     *            the bit position of the byte
+     * @param slices
+     *            the number of slices counted and scattered apart
+     * @param pool
+     *            the threads for the slices, null for one slice
+     */
+    private static void pass(
+        long[] srcKeys,
+        int[] srcOrder,
+        long[] dstKeys,
+        int[] dstOrder,
+        int n,
+        int shift,
+        int slices,
+        ExecutorService pool) {
+        int[][] counts = new int[slices][RADIX];
+        runSlices(slices, pool, slice -> {
+            int[] count = counts[slice];
+            int end = bound(n, slice + 1, slices);
+            for (int i = bound(n, slice, slices); i < end; i++) {
+                count[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+        });
+
+        // each slice writes its part of a digit after the slices before it
+        int next = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            for (int slice = 0; slice < slices; slice++) {
+                int count = counts[slice][digit];
+                counts[slice][digit] = next;
+                next += count;
+            }
+        }
+
+        runSlices(slices, pool, slice -> {
+            int[] offset = counts[slice];
+            int end = bound(n, slice + 1, slices);
+            for (int i = bound(n, slice, slices); i < end; i++) {
+                int pos = offset[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+                dstKeys[pos] = srcKeys[i];
+                dstOrder[pos] = srcOrder[i];
+            }
+        });
+    }
+
+
+    /**
+     * finds where a slice starts, in long arithmetic since n times the
+     * slice can pass Integer.MAX_VALUE
+     */
+    static int bound(int n, int slice, int slices) {
+        return (int)((long)n * slice / slices);
+    }
+
+
+    /**
+     * work done on one slice of the keys
+     */
+    private interface SliceTask {
+        /**
+         * @param slice
+         *            the slice to work on
+         */
+        void run(int slice);
+    }
+
+
+    /**
+     * runs a task for every slice and waits for all of them
+     * 
+     * @param slices
+     *            the number of slices
+     * @param pool
+     *            the threads to use, null to run in this thread
+     * @param task
+     *            the work for one slice
+     */
+    private static void runSlices(
+        int slices,
+        ExecutorService pool,
+        SliceTask task) {
+        if (pool == null) {
+            for (int slice = 0; slice < slices; slice++) {
+                task.run(slice);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int slice = 0; slice < slices; slice++) {
+            int s = slice;
+            tasks.add(() -> {
+                task.run(s);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while sorting", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
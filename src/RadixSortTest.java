@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * test class for RadixSort
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RadixSortTest extends student.TestCase {
+
+    /**
+     * tests that keys come out in unsigned order with their indexes
+     */
+    public void testSort() {
+        long[] keys = { 5, -1, 0, Long.MIN_VALUE, 5, 300, 2 };
+        int[] order = { 0, 1, 2, 3, 4, 5, 6 };
+        RadixSort.sort(keys, order, keys.length, 1);
+        assertEquals("[0, 2, 5, 5, 300, -9223372036854775808, -1]", Arrays
+            .toString(keys));
+        // equal keys keep their input order
+        assertEquals("[2, 6, 0, 4, 5, 3, 1]", Arrays.toString(order));
+    }
+
+
+    /**
+     * tests that only the first n keys are sorted
+     */
+    public void testPartial() {
+        long[] keys = { 3, 1, 2, 0 };
+        int[] order = { 0, 1, 2, 3 };
+        RadixSort.sort(keys, order, 3, 1);
+        assertEquals("[1, 2, 3, 0]", Arrays.toString(keys));
+        assertEquals("[1, 2, 0, 3]", Arrays.toString(order));
+    }
+
+
+    /**
+     * tests that a parallel sort matches a sequential one
+     */
+    public void testParallel() {
+        int n = RadixSort.PARALLEL_MIN * 3 + 17;
+        Random random = new Random(13);
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // few distinct values so stability is checked too
+            keys[i] = random.nextInt(1000) * 0x0101010101L;
+        }
+        long[] parallelKeys = keys.clone();
+        int[] order = new int[n];
+        int[] parallelOrder = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            parallelOrder[i] = i;
+        }
+        RadixSort.sort(keys, order, n, 1);
+        RadixSort.sort(parallelKeys, parallelOrder, n, 4);
+        for (int i = 1; i < n; i++) {
+            assertTrue(Long.compareUnsigned(keys[i - 1], keys[i]) <= 0);
+        }
+        assertTrue(Arrays.equals(keys, parallelKeys));
+        assertTrue(Arrays.equals(order, parallelOrder));
+    }
+
+
+    /**
+     * tests that slice bounds of large arrays split by many threads do
+     * not overflow
+     */
+    public void testBounds() {
+        int n = 1 << 26;
+        assertEquals(0, RadixSort.bound(n, 0, 33));
+        assertEquals(65075262, RadixSort.bound(n, 32, 33));
+        assertEquals(n, RadixSort.bound(n, 33, 33));
+        assertEquals(Integer.MAX_VALUE, RadixSort.bound(Integer.MAX_VALUE,
+            64, 64));
+    }
+
+}
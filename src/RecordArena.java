@@ -0,0 +1,226 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap storage for the records held in memory during run generation.
+ * Records are packed into a single direct ByteBuffer and addressed by slot,
+ * so filling or replacing a record never allocates a new object.
+ * Records are kept in their serialized form next to their normalized
+ * keys, so most comparisons are a single unsigned long compare.
+ * A stable arena also numbers records in the order they are read and
+ * breaks ties between equal keys by that number, so the ordinal is
+ * only kept in memory and never written out with the record.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RecordArena {
+
+    private ByteBuffer data;
+    private int capacity;
+    private long[] keys; // normalized key of each slot
+    private RecordFormat format;
+    private boolean exact; // normalized keys alone decide the order
+    private int width;
+    private long[] ordinals; // input order of each slot, null if unstable
+    private long nextOrdinal;
+
+    /**
+     * constructs an arena of default format records
+     * 
+     * @param capacity
+     *            the number of record slots
+     */
+    public RecordArena(int capacity) {
+        this(capacity, RecordFormat.DEFAULT);
+    }
+
+
+    /**
+     * constructs an arena with room for the given number of records
+     * 
+     * @param capacity
+     *            the number of record slots
+     * @param format
+     *            the layout of the records
+     */
+    public RecordArena(int capacity, RecordFormat format) {
+        this(capacity, format, false);
+    }
+
+
+    /**
+     * constructs an arena that may order equal keys by input order
+     * 
+     * @param capacity
+     *            the number of record slots
+     * @param format
+     *            the layout of the records
+     * @param stable
+     *            true to break ties by the order records were read
+     */
+    public RecordArena(int capacity, RecordFormat format, boolean stable) {
+        this.capacity = capacity;
+        this.format = format;
+        width = format.getWidth();
+        exact = format.isNormalizedExact();
+        data = ByteBuffer.allocateDirect(capacity * width);
+        keys = new long[capacity];
+        if (stable) {
+            ordinals = new long[capacity];
+        }
+    }
+
+
+    /**
+     * @return the number of record slots
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+
+    /**
+     * gets the recID stored in a slot of a default format arena
+     * 
+     * @param slot
+     *            the slot to read
+     * @return the recID of the record in slot
+     */
+    public long getRecID(int slot) {
+        return data.getLong(slot * width);
+    }
+
+
+    /**
+     * gets the key stored in a slot of a default format arena
+     * 
+     * @param slot
+     *            the slot to read
+     * @return the key of the record in slot
+     */
+    public double getKey(int slot) {
+        return data.getDouble(slot * width + Long.BYTES);
+    }
+
+
+    /**
+     * reads the next record from a buffer into a slot
+     * 
+     * @param slot
+     *            the slot to fill
+     * @param src
+     *            the buffer positioned at the record to read
+     */
+    public void read(int slot, ByteBuffer src) {
+        read(slot, src, key(src));
+    }
+
+
+    /**
+     * reads the next record from a buffer into a slot, with its
+     * normalized key already worked out
+     * 
+     * @param slot
+     *            the slot to fill
+     * @param src
+     *            the buffer positioned at the record to read
+     * @param key
+     *            the record's key, from key(src)
+     */
+    public void read(int slot, ByteBuffer src, long key) {
+        keys[slot] = key;
+        if (ordinals != null) {
+            ordinals[slot] = nextOrdinal++;
+        }
+        data.put(slot * width, src, src.position(), width);
+        src.position(src.position() + width);
+    }
+
+
+    /**
+     * works out the normalized key of the next record in a buffer, so
+     * it can be compared and then read without doing it twice
+     * 
+     * @param src
+     *            the buffer positioned at the record
+     * @return the record's normalized key
+     */
+    public long key(ByteBuffer src) {
+        return format.normalizedKey(src, src.position());
+    }
+
+
+    /**
+     * writes the record in a slot to a buffer
+     * 
+     * @param slot
+     *            the slot to write out
+     * @param dst
+     *            the buffer to write to at its current position
+     */
+    public void write(int slot, ByteBuffer dst) {
+        dst.put(dst.position(), data, slot * width, width);
+        dst.position(dst.position() + width);
+    }
+
+
+    /**
+     * compares the records in two slots by key, then by input order
+     * if the arena is stable
+     * 
+     * @param slot1
+     *            the first slot
+     * @param slot2
+     *            the second slot
+     * @return negative, zero or positive as the first key is less than,
+     *         equal to or greater than the second
+     */
+    public int compare(int slot1, int slot2) {
+        int cmp = Long.compareUnsigned(keys[slot1], keys[slot2]);
+        if (cmp == 0 && !exact) {
+            cmp = format.compare(data, slot1 * width, data, slot2 * width);
+        }
+        if (cmp == 0 && ordinals != null) {
+            cmp = Long.compare(ordinals[slot1], ordinals[slot2]);
+        }
+        return cmp;
+    }
+
+
+    /**
+     * compares the next record in a buffer to the record in a slot
+     * 
+     * @param src
+     *            the buffer positioned at the record to compare
+     * @param slot
+     *            the slot to compare to
+     * @return negative, zero or positive as the buffer's key is less than,
+     *         equal to or greater than the slot's
+     */
+    public int compare(ByteBuffer src, int slot) {
+        return compare(src, key(src), slot);
+    }
+
+
+    /**
+     * compares the next record in a buffer, whose normalized key is
+     * already worked out, to the record in a slot
+     * 
+     * @param src
+     *            the buffer positioned at the record to compare
+     * @param key
+     *            the record's key, from key(src)
+     * @param slot
+     *            the slot to compare to
+     * @return negative, zero or positive as the buffer's key is less than,
+     *         equal to or greater than the slot's
+     */
+    public int compare(ByteBuffer src, long key, int slot) {
+        int cmp = Long.compareUnsigned(key, keys[slot]);
+        if (cmp != 0 || exact) {
+            return cmp;
+        }
+        return format.compare(src, src.position(), data, slot * width);
+    }
+
+}
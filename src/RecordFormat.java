@@ -0,0 +1,291 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Describes the layout of a fixed width record on disk: how wide it is,
+ * where its key sits, and what type the key has. Records are compared
+ * straight from their serialized bytes, so sorting never builds objects.
+ * The default format is the 16 byte record of a long recID followed by
+ * a double key.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RecordFormat {
+
+    /**
+     * the types a key can have
+     */
+    public enum KeyType {
+        /**
+         * a signed 8 byte integer
+         */
+        LONG,
+        /**
+         * an 8 byte double, ordered like Double.compare
+         */
+        DOUBLE,
+        /**
+         * a signed 4 byte integer
+         */
+        INT,
+        /**
+         * fixed width bytes, compared unsigned from first to last
+         */
+        BYTES
+    }
+
+    /**
+     * the 16 byte recID and double key record
+     */
+    public static final RecordFormat DEFAULT = new RecordFormat(
+        ByteFile.BYTES_PER_RECORD, Long.BYTES, Double.BYTES, KeyType.DOUBLE);
+
+    private int width;
+    private int keyOffset;
+    private int keyLength;
+    private KeyType keyType;
+
+    /**
+     * constructs a record format
+     * 
+     * @param width
+     *            the bytes in one record
+     * @param keyOffset
+     *            where the key starts within the record
+     * @param keyLength
+     *            the bytes in the key, fixed for the number types
+     * @param keyType
+     *            how the key is compared
+     * @throws IllegalArgumentException
+     *             if the key does not fit the record or its type
+     */
+    public RecordFormat(
+        int width,
+        int keyOffset,
+        int keyLength,
+        KeyType keyType) {
+        if (keyType == KeyType.INT && keyLength != Integer.BYTES
+            || (keyType == KeyType.LONG || keyType == KeyType.DOUBLE)
+                && keyLength != Long.BYTES || keyLength <= 0) {
+            throw new IllegalArgumentException("key length does not fit "
+                + keyType);
+        }
+        if (keyOffset < 0 || keyOffset + keyLength > width) {
+            throw new IllegalArgumentException("key is outside the record");
+        }
+        this.width = width;
+        this.keyOffset = keyOffset;
+        this.keyLength = keyLength;
+        this.keyType = keyType;
+    }
+
+
+    /**
+     * @return the bytes in one record
+     */
+    public int getWidth() {
+        return width;
+    }
+
+
+    /**
+     * @return where the key starts within the record
+     */
+    public int getKeyOffset() {
+        return keyOffset;
+    }
+
+
+    /**
+     * @return the bytes in the key
+     */
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+
+    /**
+     * @return how the key is compared
+     */
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+
+    /**
+     * turns a record's key into an unsigned long with the same order,
+     * so heaps and merges can compare keys as plain longs. Byte keys
+     * longer than 8 bytes only keep their first 8, see isNormalizedExact.
+     * 
+     * @param bb
+     *            the buffer holding the record
+     * @param pos
+     *            where the record starts in bb
+     * @return
+     *         the normalized key, to be compared with Long.compareUnsigned
+     */
+    public long normalizedKey(ByteBuffer bb, int pos) {
+        return normalize(bb, pos, false);
+    }
+
+
+    /**
+     * normalizedKey without making NaN canonical, so every bit of the key
+     * is kept and putExactKey can write it back. NaNs with different
+     * payloads get different keys.
+     * 
+     * @param bb
+     *            the buffer holding the record
+     * @param pos
+     *            where the record starts in bb
+     * @return
+     *         the normalized key
+     */
+    long exactKey(ByteBuffer bb, int pos) {
+        return normalize(bb, pos, true);
+    }
+
+
+    /**
+     * writes back the key exactKey read. Only the first 8 bytes of a
+     * longer byte key are written.
+     * 
+     * @param bb
+     *            the buffer holding the record
+     * @param pos
+     *            where the record starts in bb
+     * @param value
+     *            a key from exactKey
+     */
+    void putExactKey(ByteBuffer bb, int pos, long value) {
+        int key = pos + keyOffset;
+        switch (keyType) {
+            case LONG:
+                bb.putLong(key, value ^ Long.MIN_VALUE);
+                break;
+            case DOUBLE:
+                bb.putLong(key, value < 0 ? value ^ Long.MIN_VALUE : ~value);
+                break;
+            case INT:
+                bb.putInt(key, (int)value ^ Integer.MIN_VALUE);
+                break;
+            default:
+                for (int i = 0; i < Math.min(keyLength, Long.BYTES); i++) {
+                    bb.put(key + i, (byte)(value >>> (Long.SIZE - Byte.SIZE
+                        * (i + 1))));
+                }
+        }
+    }
+
+
+    /**
+     * normalizes a key, keeping a double's bits as they are when exact
+     */
+    private long normalize(ByteBuffer bb, int pos, boolean exact) {
+        int key = pos + keyOffset;
+        switch (keyType) {
+            case LONG:
+                // flipping the sign bit puts negatives first
+                return bb.getLong(key) ^ Long.MIN_VALUE;
+            case DOUBLE:
+                // positives flip the sign bit, negatives flip every bit so
+                // bigger magnitudes come first; NaN is made canonical and
+                // sorts last, matching Double.compare
+                long bits = exact
+                    ? bb.getLong(key)
+                    : Double.doubleToLongBits(bb.getDouble(key));
+                return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+            case INT:
+                return (bb.getInt(key) ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            default:
+                if (keyLength >= Long.BYTES) {
+                    return bb.getLong(key);
+                }
+                // short keys are padded with zero bytes on the right
+                long prefix = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    prefix <<= 8;
+                    if (i < keyLength) {
+                        prefix |= Byte.toUnsignedInt(bb.get(key + i));
+                    }
+                }
+                return prefix;
+        }
+    }
+
+
+    /**
+     * @return true if equal normalized keys always mean equal keys,
+     *         false for byte keys longer than 8 bytes, which need
+     *         compare() to break ties
+     */
+    public boolean isNormalizedExact() {
+        return keyType != KeyType.BYTES || keyLength <= Long.BYTES;
+    }
+
+
+    /**
+     * compares the keys of two serialized records
+     * 
+     * @param a
+     *            the buffer holding the first record
+     * @param posA
+     *            where the first record starts in a
+     * @param b
+     *            the buffer holding the second record
+     * @param posB
+     *            where the second record starts in b
+     * @return negative, zero or positive as the first key is less than,
+     *         equal to or greater than the second
+     */
+    public int compare(ByteBuffer a, int posA, ByteBuffer b, int posB) {
+        int keyA = posA + keyOffset;
+        int keyB = posB + keyOffset;
+        switch (keyType) {
+            case LONG:
+                return Long.compare(a.getLong(keyA), b.getLong(keyB));
+            case DOUBLE:
+                return Double.compare(a.getDouble(keyA), b.getDouble(keyB));
+            case INT:
+                return Integer.compare(a.getInt(keyA), b.getInt(keyB));
+            default:
+                return compareBytes(a, keyA, b, keyB);
+        }
+    }
+
+
+    /**
+     * compares two byte keys unsigned, a long at a time while
+     * whole longs are left
+     * 
+     * @param a
+     *            the buffer holding the first key
+     * @param keyA
+     *            where the first key starts
+     * @param b
+     *            the buffer holding the second key
+     * @param keyB
+     *            where the second key starts
+     * @return the order of the keys
+     */
+    private int compareBytes(ByteBuffer a, int keyA, ByteBuffer b, int keyB) {
+        int i = 0;
+        for (; i + Long.BYTES <= keyLength; i += Long.BYTES) {
+            // big endian longs compare unsigned in byte order
+            int cmp = Long.compareUnsigned(a.getLong(keyA + i), b.getLong(keyB
+                + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        for (; i < keyLength; i++) {
+            int cmp = Integer.compare(Byte.toUnsignedInt(a.get(keyA + i)), Byte
+                .toUnsignedInt(b.get(keyB + i)));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+}
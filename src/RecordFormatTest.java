@@ -0,0 +1,226 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * test class for RecordFormat
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RecordFormatTest extends student.TestCase {
+
+    private File wideFile;
+
+    /**
+     * sets up for tests
+     */
+    public void setUp() {
+        wideFile = new File("wideRecords.bin");
+    }
+
+
+    /**
+     * tests comparing each type of key
+     */
+    public void testCompare() {
+        ByteBuffer bb = ByteBuffer.allocate(32);
+        bb.putLong(0, -5).putLong(8, 3);
+        RecordFormat longs = new RecordFormat(8, 0, 8,
+            RecordFormat.KeyType.LONG);
+        assertTrue(longs.compare(bb, 0, bb, 8) < 0);
+
+        bb.putInt(0, 7).putInt(4, -7);
+        RecordFormat ints = new RecordFormat(4, 0, 4, RecordFormat.KeyType.INT);
+        assertTrue(ints.compare(bb, 0, bb, 4) > 0);
+
+        bb.putDouble(16, -0.0).putDouble(24, 0.0);
+        assertTrue(RecordFormat.DEFAULT.compare(bb, 8, bb, 16) < 0);
+
+        // bytes compare unsigned, so 0x80 is after 0x7F
+        RecordFormat bytes = new RecordFormat(10, 0, 10,
+            RecordFormat.KeyType.BYTES);
+        ByteBuffer a = ByteBuffer.allocate(10);
+        ByteBuffer b = ByteBuffer.allocate(10);
+        a.put(9, (byte)0x80);
+        b.put(9, (byte)0x7F);
+        assertTrue(bytes.compare(a, 0, b, 0) > 0);
+        assertEquals(0, bytes.compare(a, 0, a, 0));
+    }
+
+
+    /**
+     * tests that normalized keys keep the order of the keys they came from
+     */
+    public void testNormalizedKey() {
+        double[] doubles = { Double.NEGATIVE_INFINITY, -1e300, -1,
+            -Double.MIN_VALUE, -0.0, 0.0, Double.MIN_VALUE, 1, 1e300,
+            Double.POSITIVE_INFINITY, Double.NaN };
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        RecordFormat doubleKey = new RecordFormat(8, 0, 8,
+            RecordFormat.KeyType.DOUBLE);
+        for (double x : doubles) {
+            for (double y : doubles) {
+                bb.putDouble(0, x).putDouble(8, y);
+                assertEquals(Integer.signum(Double.compare(x, y)), Integer
+                    .signum(Long.compareUnsigned(doubleKey.normalizedKey(bb, 0),
+                        doubleKey.normalizedKey(bb, 8))));
+            }
+        }
+
+        long[] longs = { Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE };
+        RecordFormat longKey = new RecordFormat(8, 0, 8,
+            RecordFormat.KeyType.LONG);
+        RecordFormat intKey = new RecordFormat(8, 4, 4,
+            RecordFormat.KeyType.INT);
+        for (long x : longs) {
+            for (long y : longs) {
+                bb.putLong(0, x).putLong(8, y);
+                assertEquals(Integer.signum(Long.compare(x, y)), Integer.signum(
+                    Long.compareUnsigned(longKey.normalizedKey(bb, 0), longKey
+                        .normalizedKey(bb, 8))));
+                assertEquals(Integer.signum(Integer.compare((int)x, (int)y)),
+                    Integer.signum(Long.compareUnsigned(intKey.normalizedKey(bb,
+                        0), intKey.normalizedKey(bb, 8))));
+            }
+        }
+
+        // short byte keys are exact, long ones only by their prefix
+        RecordFormat shortBytes = new RecordFormat(8, 0, 3,
+            RecordFormat.KeyType.BYTES);
+        bb.put(0, (byte)1).put(1, (byte)0xFF).put(2, (byte)2);
+        bb.put(8, (byte)1).put(9, (byte)0xFF).put(10, (byte)3);
+        assertTrue(Long.compareUnsigned(shortBytes.normalizedKey(bb, 0),
+            shortBytes.normalizedKey(bb, 8)) < 0);
+        assertTrue(shortBytes.isNormalizedExact());
+        assertFalse(new RecordFormat(16, 0, 9, RecordFormat.KeyType.BYTES)
+            .isNormalizedExact());
+    }
+
+
+    /**
+     * tests that exact keys match normalized ones but keep NaN payloads,
+     * and are written back where they were read
+     */
+    public void testExactKey() {
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        RecordFormat doubleKey = new RecordFormat(8, 0, 8,
+            RecordFormat.KeyType.DOUBLE);
+        bb.putDouble(0, -1.5);
+        assertEquals(doubleKey.normalizedKey(bb, 0), doubleKey.exactKey(bb,
+            0));
+
+        // a NaN payload is kept, and written back bit for bit
+        long nan = 0x7FF0000000000123L;
+        bb.putLong(0, nan);
+        assertFalse(doubleKey.normalizedKey(bb, 0) == doubleKey.exactKey(bb,
+            0));
+        long key = doubleKey.exactKey(bb, 0);
+        bb.putLong(0, 0);
+        doubleKey.putExactKey(bb, 0, key);
+        assertEquals(nan, bb.getLong(0));
+
+        // a short byte key is normalized and written back in place
+        RecordFormat bytes = new RecordFormat(16, 2, 3,
+            RecordFormat.KeyType.BYTES);
+        bb.putLong(0, 0x1122334455667788L).putLong(8, 0x99);
+        key = bytes.exactKey(bb, 0);
+        assertEquals(bytes.normalizedKey(bb, 0), key);
+        bb.putLong(0, 0);
+        bytes.putExactKey(bb, 0, key);
+        assertEquals(0x0000334455000000L, bb.getLong(0));
+        assertEquals(0x99, bb.getLong(8));
+    }
+
+
+    /**
+     * tests that a key must fit its record and type
+     */
+    public void testInvalid() {
+        try {
+            new RecordFormat(16, 12, 8, RecordFormat.KeyType.LONG);
+            fail("key past the end of the record");
+        }
+        catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+        try {
+            new RecordFormat(16, 0, 4, RecordFormat.KeyType.DOUBLE);
+            fail("double key of 4 bytes");
+        }
+        catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+
+    /**
+     * sorts a file of records with the given format and checks the order
+     * 
+     * @param format
+     *            the layout of the records
+     * @param records
+     *            the number of records to sort
+     * @throws IOException
+     *             if a file error occurs
+     */
+    private void checkSort(RecordFormat format, int records)
+        throws IOException {
+        wideFile.delete();
+        RandomAccessFile raf = new RandomAccessFile(wideFile, "rw");
+        byte[] record = new byte[format.getWidth()];
+        Random rng = new Random(format.getWidth());
+        long total = 0;
+        for (int i = 0; i < records; i++) {
+            rng.nextBytes(record);
+            total += record[0];
+            raf.write(record);
+        }
+        raf.close();
+
+        SortConfig config = new SortConfig(16 * format.getWidth() * 8, 16
+            * format.getWidth(), 4, format);
+        ByteFile bf = new ByteFile(wideFile.getName(), 0, config);
+        bf.replacementSelection();
+        assertFalse(bf.isSorted());
+        bf.multiwayMerge(bf.getRuns(), wideFile.getName(), "wideTemp.bin");
+        assertTrue(bf.isSorted());
+
+        // the same records are still there
+        raf = new RandomAccessFile(wideFile, "r");
+        assertEquals((long)records * format.getWidth(), raf.length());
+        for (int i = 0; i < records; i++) {
+            raf.readFully(record);
+            total -= record[0];
+        }
+        raf.close();
+        assertEquals(0, total);
+        wideFile.delete();
+    }
+
+
+    /**
+     * tests sorting 64 byte records on an int key
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSortIntKey() throws IOException {
+        checkSort(new RecordFormat(64, 20, 4, RecordFormat.KeyType.INT), 2000);
+    }
+
+
+    /**
+     * tests sorting 128 byte records on a 12 byte key
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testSortBytesKey() throws IOException {
+        checkSort(new RecordFormat(128, 100, 12, RecordFormat.KeyType.BYTES),
+            1500);
+    }
+
+}
@@ -0,0 +1,211 @@
+import java.io.IOException;
+
+/**
+ * Min-heap of slot indices into a RecordArena.
+ * A primitive counterpart of MinHeap used by replacement selection:
+ * it sifts int slots and compares the keys stored in the arena,
+ * so no Record objects are needed while forming runs.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+class RecordHeap {
+    private int[] heap; // slots of the arena in heap order
+    private RecordArena arena; // where the records live
+    private int capacity; // Maximum size of the heap
+    private int n; // Number of active things currently in heap
+
+    /**
+     * constructs a heap over the first heapSize slots of the arena
+     * 
+     * @param arena
+     *            the arena holding the records
+     * @param heapSize
+     *            the number of filled slots
+     * @throws IOException
+     *             if heapSize is beyond the arena's capacity
+     */
+    RecordHeap(RecordArena arena, int heapSize) throws IOException {
+        if (heapSize > arena.capacity()) {
+            throw new IOException("Heap size is beyond arena capacity");
+        }
+        this.arena = arena;
+        capacity = arena.capacity();
+        heap = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            heap[i] = i;
+        }
+        n = heapSize;
+        // build the heap from the arena
+        buildHeap();
+    }
+
+
+    /**
+     * Forcefully changes the heap size. May need a buildHeap() afterwards
+     * 
+     * @param newSize
+     *            the new size of the heap
+     */
+    public void setHeapSize(int newSize) {
+        n = newSize;
+    }
+
+
+    /**
+     * 
+     * @return
+     *         current size of the heap
+     */
+    public int heapSize() {
+        return n;
+    }
+
+
+    /**
+     * 
+     * @param pos
+     *            position to check for
+     * @return Return true if pos a leaf position, false otherwise
+     */
+    public boolean isLeaf(int pos) {
+        return (n / 2 <= pos) && (pos < n);
+    }
+
+
+    /**
+     * Organize slots to satisfy the heap structure
+     * 
+     * @throws IOException
+     *             if sift down has an invalid position
+     */
+    public void buildHeap() throws IOException {
+        // Call sift down on each internal node, starting from bottom
+        for (int i = MinHeap.parent(n - 1); i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+
+    /**
+     * Moves a slot down to its correct place
+     * 
+     * @param pos
+     *            position to sift down
+     * @throws IOException
+     *             if pos is an invalid position
+     */
+    public void siftDown(int pos) throws IOException {
+        if (0 > pos || pos >= n)
+            throw new IOException("Invalid heap position");
+        while (!isLeaf(pos)) {
+            int child = MinHeap.leftChild(pos);
+            // compare the left and right children
+            if ((child + 1 < n) && isLessThan(child + 1, child)) {
+                child = child + 1;
+            }
+            if (!isLessThan(child, pos)) {
+                return; // stop early
+            }
+            swap(pos, child);
+            pos = child; // keep sifting down
+        }
+    }
+
+
+    /**
+     * Moves a slot up to its correct place
+     * 
+     * @param pos
+     *            position to sift up
+     * @throws IOException
+     *             if pos is an invalid heap position
+     */
+    public void siftUp(int pos) throws IOException {
+        if (0 > pos || pos >= n)
+            throw new IOException("Invalid heap position");
+        while (pos > 0) {
+            int parent = MinHeap.parent(pos);
+            if (isLessThan(parent, pos)) {
+                return; // stop early
+            }
+            swap(pos, parent);
+            pos = parent; // keep sifting up
+        }
+    }
+
+
+    /**
+     * removes the min slot of the heap
+     * 
+     * @return the slot holding the minimum record
+     * @throws IOException
+     *             if the heap is empty
+     */
+    public int removeMin() throws IOException {
+        if (n <= 0)
+            throw new IOException("Heap is empty; cannot remove");
+        n--;
+        if (n > 0) {
+            swap(0, n); // Swap minimum with last value
+            siftDown(0); // Put new heap root val in correct place
+        }
+        return heap[n];
+    }
+
+
+    /**
+     * restores the heap after the record in a position's slot changed
+     * 
+     * @param pos
+     *            the position to be updated
+     * @throws IOException
+     *             if there was an invalid heap position
+     */
+    public void update(int pos) throws IOException {
+        siftUp(pos); // priority goes up
+        siftDown(pos); // unimportant goes down
+    }
+
+
+    /**
+     * swaps the slots at the given positions
+     * 
+     * @param pos1
+     *            the first position
+     * @param pos2
+     *            the second position
+     */
+    public void swap(int pos1, int pos2) {
+        int temp = heap[pos1];
+        heap[pos1] = heap[pos2];
+        heap[pos2] = temp;
+    }
+
+
+    /**
+     * compares the records behind two heap positions
+     * 
+     * @param pos1
+     *            the first position to check
+     * @param pos2
+     *            the second position to compare to
+     * @return
+     *         true is the first record is less than the second
+     */
+    private boolean isLessThan(int pos1, int pos2) {
+        return arena.compare(heap[pos1], heap[pos2]) < 0;
+    }
+
+
+    /**
+     * gets the slot of the minimum record
+     * 
+     * @return
+     *         the slot at the root of the heap
+     */
+    public int getMin() {
+        return heap[0];
+    }
+
+}
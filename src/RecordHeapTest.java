@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * test class for RecordHeap
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RecordHeapTest extends student.TestCase {
+
+    private RecordArena arena;
+    private RecordHeap heap;
+
+    /**
+     * sets up an arena of records with descending keys
+     * 
+     * @throws IOException
+     *             if the heap cannot be built
+     */
+    public void setUp() throws IOException {
+        arena = new RecordArena(10);
+        ByteBuffer bb = ByteBuffer.allocate(10 * ByteFile.BYTES_PER_RECORD);
+        for (int i = 0; i < 10; i++) {
+            bb.putLong(i);
+            bb.putDouble(10 - i);
+        }
+        bb.flip();
+        for (int i = 0; i < 10; i++) {
+            arena.read(i, bb);
+        }
+        heap = new RecordHeap(arena, 10);
+    }
+
+
+    /**
+     * tests that removeMin returns slots in key order
+     * 
+     * @throws IOException
+     *             if the heap is misused
+     */
+    public void testRemoveMin() throws IOException {
+        double prev = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 10; i++) {
+            int slot = heap.removeMin();
+            assertTrue(arena.getKey(slot) >= prev);
+            assertEquals(10 - (long)arena.getKey(slot), arena.getRecID(slot));
+            prev = arena.getKey(slot);
+        }
+        assertEquals(0, heap.heapSize());
+    }
+
+
+    /**
+     * tests replacing the record in the root slot
+     * 
+     * @throws IOException
+     *             if the heap is misused
+     */
+    public void testUpdate() throws IOException {
+        int min = heap.getMin();
+        assertEquals(1.0, arena.getKey(min), 0.0);
+        ByteBuffer bb = ByteBuffer.allocate(ByteFile.BYTES_PER_RECORD);
+        bb.putLong(42).putDouble(20).flip();
+        arena.read(min, bb);
+        heap.update(0);
+        assertEquals(2.0, arena.getKey(heap.getMin()), 0.0);
+
+        ByteBuffer out = ByteBuffer.allocate(ByteFile.BYTES_PER_RECORD);
+        arena.write(min, out);
+        out.flip();
+        assertEquals(42, out.getLong());
+        assertEquals(20.0, out.getDouble(), 0.0);
+    }
+
+}
@@ -1,7 +1,4 @@
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 
 /**
@@ -16,11 +13,11 @@ public class Run implements Comparable<Run> {
 
     private Long startRun;
     private Long endRun;
-    private Record record;
-    private byte[] buff;
     private ByteBuffer bb;
-    private RandomAccessFile raf;
-    private long bitsPassed;
+    private int recordPos; // where the current record starts in bb
+    private boolean hasRecord; // false once the run is used up
+    private RecordFormat format;
+    private BlockSource source;
 
     /**
      * constructs a new run based on the given arguments
@@ -35,28 +32,122 @@ public class Run implements Comparable<Run> {
      *             if there is an error with the file
      */
     public Run(Long startRun, Long endRun, String filename) throws IOException {
+        this(startRun, endRun, filename, new SortConfig());
+    }
+
+
+    /**
+     * constructs a new run that reads with the config's
+     * block size and I/O mode
+     * 
+     * @param startRun
+     *            the starting position of the run in the file
+     * @param endRun
+     *            the ending position of the run in the file
+     * @param filename
+     *            the name of the file
+     * @param config
+     *            the sort settings
+     * @throws IOException
+     *             if there is an error with the file
+     */
+    public Run(Long startRun, Long endRun, String filename, SortConfig config)
+        throws IOException {
+        this(startRun, endRun, filename, config, null);
+    }
+
+
+    /**
+     * constructs a run over blocks written with a codec
+     * 
+     * @param startRun
+     *            the starting position of the run in the file
+     * @param endRun
+     *            the ending position of the run in the file
+     * @param filename
+     *            the name of the file
+     * @param config
+     *            the sort settings
+     * @param codec
+     *            the codec the run was written with, or null for none
+     * @throws IOException
+     *             if there is an error with the file
+     */
+    public Run(
+        Long startRun,
+        Long endRun,
+        String filename,
+        SortConfig config,
+        BlockCodec codec)
+        throws IOException {
         this.startRun = startRun;
         this.endRun = endRun;
-        // used when there is part of a block to read from
-        bitsPassed = (long)0;
-        // read in one block at a time
-        buff = new byte[ByteFile.BYTES_PER_BLOCK];
-        bb = ByteBuffer.wrap(buff);
-        bb.position(0);
-        raf = new RandomAccessFile(new File(filename), "r");
-        // get to start position and read in first block
-        // then set the first record to the first found record
-        raf.seek(startRun);
-        raf.read(buff);
-        this.record = new Record(bb.getLong(), bb.getDouble());
+        format = config.getRecordFormat();
+        source = BlockSource.open(filename, startRun, endRun, config, codec);
+        // set the first record to the first found record
+        bb = ByteBuffer.allocate(0);
+        advanceRecord();
     }
 
 
     /**
-     * @return the record
+     * @return the record, for default format runs
      */
     public Record getRecord() {
-        return record;
+        return new Record(getRecID(), getKey());
+    }
+
+
+    /**
+     * @return the recID of the current record, for default format runs
+     */
+    public long getRecID() {
+        return bb.getLong(recordPos);
+    }
+
+
+    /**
+     * @return the key of the current record, for default format runs
+     */
+    public double getKey() {
+        return bb.getDouble(recordPos + Long.BYTES);
+    }
+
+
+    /**
+     * @return true if the run has a current record, false if it is
+     *         empty or used up
+     */
+    public boolean hasRecord() {
+        return hasRecord;
+    }
+
+
+    /**
+     * @return the buffer holding the current record
+     */
+    public ByteBuffer buffer() {
+        return bb;
+    }
+
+
+    /**
+     * @return where the current record starts in buffer()
+     */
+    public int recordPosition() {
+        return recordPos;
+    }
+
+
+    /**
+     * copies the current record to a buffer
+     * 
+     * @param dst
+     *            the buffer to write to at its current position
+     */
+    public void writeRecord(ByteBuffer dst) {
+        dst.put(dst.position(), bb, recordPos, format.getWidth());
+        dst.position(dst.position() + format.getWidth());
     }
 
 
@@ -72,49 +163,41 @@ public class Run implements Comparable<Run> {
      */
     public boolean advanceRecord() throws IOException {
 
-        // if we are in a partial block and there is none left to read
-        if (bb.position() + bitsPassed > buff.length) {
-            return false;
-        }
-
-        // if there is another record to read and we still have more in buffer
-        if (bb.position() <= buff.length - ByteFile.BYTES_PER_RECORD) {
-            this.record = new Record(bb.getLong(), bb.getDouble());
-        }
         // if we need to read in more data
-        else {
-            bb.clear();
-            // if we are at end of file
-            if (raf.read(buff) == -1)
+        if (!bb.hasRemaining()) {
+            ByteBuffer next = source.nextBlock();
+            // if we are at the end of the run
+            if (next == null) {
+                hasRecord = false;
                 return false;
-            bb.position(0);
-            // if the new file pointer is after end of run
-            if (raf.getFilePointer() > endRun) {
-                // denote how many bits passed to check
-                // for partial blocks if we are not a full block
-                // passed the end of file
-                bitsPassed = raf.getFilePointer() - endRun;
             }
-            // if we are a full block passed end of file then there is
-            // no partial block data to read in
-            if (bitsPassed == (ByteFile.BYTES_PER_BLOCK))
-                return false;
-            // or else start going into the partial block
-            this.record = new Record(bb.getLong(), bb.getDouble());
+            bb = next;
         }
+        recordPos = bb.position();
+        bb.position(recordPos + format.getWidth());
+        hasRecord = true;
         return true;
 
     }
 
 
     /**
+     * compares the current records of two runs by key. Equal keys are
+     * ordered by where the runs start, since runs earlier in a file hold
+     * earlier input, so merging in this order is stable.
+     * 
      * @param o
      *            other run to compare to
      * @return value of compare to
      */
     @Override
     public int compareTo(Run o) {
-        return Double.compare(this.record.getKey(), o.getRecord().getKey());
+        int cmp = format.compare(bb, recordPos, o.buffer(), o
+            .recordPosition());
+        if (cmp != 0) {
+            return cmp;
+        }
+        return startRun.compareTo(o.startRun);
     }
 
 
@@ -125,7 +208,7 @@ public class Run implements Comparable<Run> {
      *             if there is an error with the file
      */
     public void close() throws IOException {
-        raf.close();
+        source.close();
     }
 
 }
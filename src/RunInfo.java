@@ -0,0 +1,131 @@
+/**
+ * What a sort knows about one run: where it is, how many records it
+ * holds, its smallest and largest keys, and a sparse index of the first
+ * key in each of its blocks. Keys are normalized keys as made by
+ * RecordFormat.normalizedKey, compared as unsigned longs.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RunInfo {
+
+    private long offset;
+    private long length;
+    private long records;
+    private long minKey;
+    private long maxKey;
+    private long[] blockOffsets;
+    private long[] blockKeys;
+
+    /**
+     * constructs the description of a run
+     * 
+     * @param offset
+     *            where the run starts in its file
+     * @param length
+     *            the bytes the run takes in its file
+     * @param records
+     *            the number of records in the run
+     * @param minKey
+     *            the normalized key of the first record
+     * @param maxKey
+     *            the normalized key of the last record
+     * @param blockOffsets
+     *            the file offset of each block of the run
+     * @param blockKeys
+     *            the normalized key of the run's first record in each block
+     */
+    public RunInfo(
+        long offset,
+        long length,
+        long records,
+        long minKey,
+        long maxKey,
+        long[] blockOffsets,
+        long[] blockKeys) {
+        this.offset = offset;
+        this.length = length;
+        this.records = records;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        this.blockOffsets = blockOffsets;
+        this.blockKeys = blockKeys;
+    }
+
+
+    /**
+     * @return where the run starts in its file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+
+    /**
+     * @return the bytes the run takes in its file
+     */
+    public long getLength() {
+        return length;
+    }
+
+
+    /**
+     * @return the offset just past the run
+     */
+    public long getEnd() {
+        return offset + length;
+    }
+
+
+    /**
+     * @return the number of records in the run
+     */
+    public long getRecords() {
+        return records;
+    }
+
+
+    /**
+     * @return the normalized key of the first record
+     */
+    public long getMinKey() {
+        return minKey;
+    }
+
+
+    /**
+     * @return the normalized key of the last record
+     */
+    public long getMaxKey() {
+        return maxKey;
+    }
+
+
+    /**
+     * @return the number of blocks in the sparse index
+     */
+    public int getBlocks() {
+        return blockOffsets.length;
+    }
+
+
+    /**
+     * @param block
+     *            the index of a block of the run
+     * @return the file offset of the block
+     */
+    public long getBlockOffset(int block) {
+        return blockOffsets[block];
+    }
+
+
+    /**
+     * @param block
+     *            the index of a block of the run
+     * @return the normalized key of the run's first record in the block
+     */
+    public long getBlockKey(int block) {
+        return blockKeys[block];
+    }
+
+}
@@ -0,0 +1,196 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The runs of one file between sort passes, saved next to the data so
+ * a merge can be planned without reading the runs, and a sort that was
+ * stopped can carry on from the last finished pass.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RunManifest {
+
+    private static final int MAGIC = 0x524D4E31; // "RMN1"
+
+    private String runFile;
+    private boolean encoded;
+    private List<RunInfo> runs;
+
+    /**
+     * constructs a manifest
+     * 
+     * @param runFile
+     *            the file holding the runs
+     * @param encoded
+     *            true if the runs were written with the run codec
+     * @param runs
+     *            the runs in file order
+     */
+    public RunManifest(String runFile, boolean encoded, List<RunInfo> runs) {
+        this.runFile = runFile;
+        this.encoded = encoded;
+        this.runs = runs;
+    }
+
+
+    /**
+     * @return the file holding the runs
+     */
+    public String getRunFile() {
+        return runFile;
+    }
+
+
+    /**
+     * @return true if the runs were written with the run codec
+     */
+    public boolean isEncoded() {
+        return encoded;
+    }
+
+
+    /**
+     * @return the runs in file order
+     */
+    public List<RunInfo> getRuns() {
+        return runs;
+    }
+
+
+    /**
+     * @return the start of each run followed by the end of the last one
+     */
+    public List<Long> boundaries() {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(runs.isEmpty() ? 0 : runs.get(0).getOffset());
+        for (RunInfo run : runs) {
+            bounds.add(run.getEnd());
+        }
+        return bounds;
+    }
+
+
+    /**
+     * @return the number of records in every run
+     */
+    public long records() {
+        long total = 0;
+        for (RunInfo run : runs) {
+            total += run.getRecords();
+        }
+        return total;
+    }
+
+
+    /**
+     * saves the manifest to disk and syncs it, so it survives a crash
+     * 
+     * @param file
+     *            where to save it
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void write(File file) throws IOException {
+        write(file, true);
+    }
+
+
+    /**
+     * saves the manifest to disk, replacing any old one in a single
+     * rename, so a crash leaves either the old manifest or the new one.
+     * When synced, the directory is synced after the rename too, so the
+     * new one is kept; a sort that can not be restarted skips both.
+     * 
+     * @param file
+     *            where to save it
+     * @param sync
+     *            true to force the manifest to disk before returning
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void write(File file, boolean sync) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            stream));
+        out.writeInt(MAGIC);
+        out.writeUTF(runFile);
+        out.writeBoolean(encoded);
+        out.writeInt(runs.size());
+        for (RunInfo run : runs) {
+            out.writeLong(run.getOffset());
+            out.writeLong(run.getLength());
+            out.writeLong(run.getRecords());
+            out.writeLong(run.getMinKey());
+            out.writeLong(run.getMaxKey());
+            out.writeInt(run.getBlocks());
+            for (int b = 0; b < run.getBlocks(); b++) {
+                out.writeLong(run.getBlockOffset(b));
+                out.writeLong(run.getBlockKey(b));
+            }
+        }
+        out.flush();
+        if (sync) {
+            stream.getFD().sync();
+        }
+        out.close();
+        ByteFile.moveFile(temp, file);
+        if (sync) {
+            ByteFile.syncDirectory(file);
+        }
+    }
+
+
+    /**
+     * loads a saved manifest
+     * 
+     * @param file
+     *            the saved manifest
+     * @return
+     *         the manifest
+     * @throws IOException
+     *             if the file can not be read or is not a manifest
+     */
+    public static RunManifest read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a run manifest");
+            }
+            String runFile = in.readUTF();
+            boolean encoded = in.readBoolean();
+            int count = in.readInt();
+            List<RunInfo> runs = new ArrayList<>(count);
+            for (int r = 0; r < count; r++) {
+                long offset = in.readLong();
+                long length = in.readLong();
+                long records = in.readLong();
+                long minKey = in.readLong();
+                long maxKey = in.readLong();
+                long[] offsets = new long[in.readInt()];
+                long[] keys = new long[offsets.length];
+                for (int b = 0; b < offsets.length; b++) {
+                    offsets[b] = in.readLong();
+                    keys[b] = in.readLong();
+                }
+                runs.add(new RunInfo(offset, length, records, minKey, maxKey,
+                    offsets, keys));
+            }
+            return new RunManifest(runFile, encoded, runs);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+}
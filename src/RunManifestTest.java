@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * test class for RunManifest
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class RunManifestTest extends student.TestCase {
+
+    private File saved;
+    private RunManifest manifest;
+
+    /**
+     * sets up a manifest of two indexed runs
+     */
+    public void setUp() {
+        saved = new File("runManifestTest.bin");
+        RunInfo first = new RunInfo(0, 96, 6, 3, 40, new long[] { 0, 64 },
+            new long[] { 3, 20 });
+        RunInfo second = new RunInfo(96, 32, 2, -5, -1, new long[] { 96 },
+            new long[] { -5 });
+        manifest = new RunManifest("runs.bin", true, Arrays.asList(first,
+            second));
+    }
+
+
+    /**
+     * removes the saved manifest
+     */
+    public void tearDown() {
+        saved.delete();
+        new File(saved.getPath() + ".tmp").delete();
+    }
+
+
+    /**
+     * tests the values derived from the runs
+     */
+    public void testDerived() {
+        assertEquals(Arrays.asList(0L, 96L, 128L), manifest.boundaries());
+        assertEquals(8, manifest.records());
+    }
+
+
+    /**
+     * tests that a saved manifest reads back the same, block indexes
+     * included, and leaves no temporary file
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testRoundTrip() throws IOException {
+        manifest.write(saved);
+        assertFalse(new File(saved.getPath() + ".tmp").exists());
+        RunManifest read = RunManifest.read(saved);
+        assertEquals("runs.bin", read.getRunFile());
+        assertTrue(read.isEncoded());
+        List<RunInfo> runs = read.getRuns();
+        assertEquals(2, runs.size());
+        for (int r = 0; r < runs.size(); r++) {
+            RunInfo expected = manifest.getRuns().get(r);
+            RunInfo run = runs.get(r);
+            assertEquals(expected.getOffset(), run.getOffset());
+            assertEquals(expected.getLength(), run.getLength());
+            assertEquals(expected.getRecords(), run.getRecords());
+            assertEquals(expected.getMinKey(), run.getMinKey());
+            assertEquals(expected.getMaxKey(), run.getMaxKey());
+            assertEquals(expected.getBlocks(), run.getBlocks());
+            for (int b = 0; b < run.getBlocks(); b++) {
+                assertEquals(expected.getBlockOffset(b), run.getBlockOffset(
+                    b));
+                assertEquals(expected.getBlockKey(b), run.getBlockKey(b));
+            }
+        }
+    }
+
+
+    /**
+     * tests that a file that is not a manifest is rejected
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testBadMagic() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(saved, "rw");
+        raf.writeInt(0x12345678);
+        raf.writeUTF("runs.bin");
+        raf.close();
+        Exception thrown = null;
+        try {
+            RunManifest.read(saved);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertTrue(thrown.getMessage().contains("not a run manifest"));
+    }
+
+
+    /**
+     * tests that a manifest saved without syncing reads back the same
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testUnsynced() throws IOException {
+        manifest.write(saved, false);
+        assertFalse(new File(saved.getPath() + ".tmp").exists());
+        RunManifest read = RunManifest.read(saved);
+        assertEquals(manifest.boundaries(), read.boundaries());
+        assertEquals(manifest.records(), read.records());
+    }
+
+
+    /**
+     * tests that a manifest cut short is rejected
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testTruncated() throws IOException {
+        manifest.write(saved);
+        RandomAccessFile raf = new RandomAccessFile(saved, "rw");
+        raf.setLength(raf.length() - 4);
+        raf.close();
+        Exception thrown = null;
+        try {
+            RunManifest.read(saved);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+}
@@ -27,7 +27,24 @@ public class RunTest extends student.TestCase {
         for (int i = 0; i < 511; i++) {
             assertTrue(run.advanceRecord());
         }
+        assertFalse(run.advanceRecord());
         run.close();
     }
 
+
+    /**
+     * tests a run that does not start or end on a block boundary
+     * 
+     * @throws IOException
+     */
+    public void testUnalignedRun() throws IOException {
+        Run part = new Run((long)160, (long)8192 + 160, "sampleInput16.bin");
+        int count = 1;
+        while (part.advanceRecord()) {
+            count++;
+        }
+        assertEquals(512, count);
+        part.close();
+    }
+
 }
@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scratch files of one sort, spread over the config's temp
+ * directories. Every file gets a unique name, so sorts sharing a
+ * directory do not collide, and goes in the directory holding the
+ * fewest live bytes, so runs that are merged together sit on different
+ * disks when the directories are on different disks.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ScratchSpace {
+
+    private List<File> dirs = new ArrayList<>();
+    private long[] load;
+    private Map<File, Integer> placed = new HashMap<>();
+    private Map<File, Long> sizes = new HashMap<>();
+
+    /**
+     * constructs the scratch space of a sort
+     * 
+     * @param config
+     *            the sort settings, whose temp directories are used, or
+     *            the working directory when it has none
+     */
+    public ScratchSpace(SortConfig config) {
+        this(config.getTempDirs().isEmpty()
+            ? Arrays.asList(new File("."))
+            : config.getTempDirs());
+    }
+
+
+    /**
+     * constructs a scratch space over the given directories
+     * 
+     * @param dirs
+     *            the directories files are placed in, at least one
+     */
+    public ScratchSpace(List<File> dirs) {
+        this.dirs.addAll(dirs);
+        load = new long[dirs.size()];
+    }
+
+
+    /**
+     * creates an empty scratch file in the least loaded directory, ties
+     * to the first
+     * 
+     * @param prefix
+     *            the start of the file's name
+     * @param bytes
+     *            about how much will be written to it
+     * @return
+     *         the new file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public synchronized File create(String prefix, long bytes)
+        throws IOException {
+        int least = 0;
+        for (int i = 1; i < load.length; i++) {
+            if (load[i] < load[least]) {
+                least = i;
+            }
+        }
+        File file = File.createTempFile(prefix, ".bin", dirs.get(least));
+        load[least] += bytes;
+        placed.put(file, least);
+        sizes.put(file, bytes);
+        return file;
+    }
+
+
+    /**
+     * records how much a scratch file holds, for one whose size was not
+     * known when it was created
+     * 
+     * @param file
+     *            a file from create
+     * @param bytes
+     *            the bytes written to it
+     */
+    public synchronized void resize(File file, long bytes) {
+        Integer dir = placed.get(file);
+        if (dir != null) {
+            load[dir] += bytes - sizes.put(file, bytes);
+        }
+    }
+
+
+    /**
+     * deletes a scratch file whose data has been read
+     * 
+     * @param file
+     *            the file, which need not have come from create
+     */
+    public synchronized void release(File file) {
+        Integer dir = placed.remove(file);
+        if (dir != null) {
+            load[dir] -= sizes.remove(file);
+        }
+        file.delete();
+    }
+
+
+    /**
+     * deletes every scratch file not yet released
+     */
+    public synchronized void close() {
+        for (File file : new ArrayList<>(placed.keySet())) {
+            release(file);
+        }
+    }
+
+
+    /**
+     * @return the directories files are placed in
+     */
+    public List<File> getDirs() {
+        return dirs;
+    }
+
+
+    /**
+     * @return the bytes expected in each directory's live files
+     */
+    public synchronized long[] getLoad() {
+        return load.clone();
+    }
+
+}
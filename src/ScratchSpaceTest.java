@@ -0,0 +1,106 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * test class for ScratchSpace
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class ScratchSpaceTest extends student.TestCase {
+
+    private File[] dirs;
+    private ScratchSpace space;
+
+    /**
+     * sets up for tests
+     */
+    public void setUp() {
+        dirs = new File[] { new File("spaceA"), new File("spaceB") };
+        for (File dir : dirs) {
+            dir.mkdir();
+        }
+        SortConfig config = new SortConfig();
+        config.setTempDirs(dirs);
+        space = new ScratchSpace(config);
+    }
+
+
+    /**
+     * removes the scratch directories
+     */
+    public void tearDown() {
+        space.close();
+        for (File dir : dirs) {
+            dir.delete();
+        }
+    }
+
+
+    /**
+     * tests that files go to the directory with the fewest bytes and
+     * have names of their own
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testPlacement() throws IOException {
+        File first = space.create("run", 100);
+        File second = space.create("run", 10);
+        File third = space.create("run", 10);
+        File fourth = space.create("run", 10);
+        assertEquals(dirs[0].getAbsoluteFile(), first.getAbsoluteFile()
+            .getParentFile());
+        assertEquals(dirs[1].getAbsoluteFile(), second.getAbsoluteFile()
+            .getParentFile());
+        assertEquals(dirs[1].getAbsoluteFile(), fourth.getAbsoluteFile()
+            .getParentFile());
+        assertFalse(second.equals(third));
+        assertTrue(third.exists());
+        assertEquals(100, space.getLoad()[0]);
+        assertEquals(30, space.getLoad()[1]);
+
+        space.release(first);
+        assertFalse(first.exists());
+        assertEquals(0, space.getLoad()[0]);
+        assertEquals(dirs[0].getAbsoluteFile(), space.create("run", 5)
+            .getAbsoluteFile().getParentFile());
+    }
+
+
+    /**
+     * tests that a file created before its size was known is placed by
+     * the size it turned out to have
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testResize() throws IOException {
+        File runs = space.create("runs", 0);
+        space.resize(runs, 100);
+        assertEquals(100, space.getLoad()[0]);
+        assertEquals(dirs[1].getAbsoluteFile(), space.create("merge", 100)
+            .getAbsoluteFile().getParentFile());
+        space.resize(new File(dirs[0], "other"), 5);
+        assertEquals(100, space.getLoad()[0]);
+    }
+
+
+    /**
+     * tests that close deletes what was not released, and that no
+     * directories means the working directory
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testClose() throws IOException {
+        File file = space.create("run", 1);
+        space.close();
+        assertFalse(file.exists());
+        assertEquals(0, dirs[0].list().length);
+
+        ScratchSpace here = new ScratchSpace(new SortConfig());
+        assertEquals("[.]", here.getDirs().toString());
+    }
+
+}
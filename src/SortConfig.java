@@ -0,0 +1,436 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory and I/O settings for a sort.
+ * The memory budget is the number of bytes of records the sort may hold
+ * at once; the run generation heap, the I/O block size and the merge
+ * fan-in are all derived from it.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class SortConfig {
+
+    private long memoryBytes;
+    private int blockBytes;
+    private int maxFanIn;
+    private RecordFormat format;
+    private boolean mappedIO;
+    private boolean directIO;
+    private int threads = 1;
+    private int readAheadBlocks = 1;
+    private int writeBehindBlocks = 1;
+    private boolean radixRuns;
+    private boolean stable;
+    private BlockCodec runCodec;
+    private boolean restartable;
+    private boolean blockIndex;
+    private List<File> tempDirs = new ArrayList<>();
+
+    /**
+     * constructs the default config, 8 blocks of 512 records
+     * merged 8 ways
+     */
+    public SortConfig() {
+        this((long)ByteFile.BLOCKS_IN_RAM * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, ByteFile.BLOCKS_IN_RAM);
+    }
+
+
+    /**
+     * constructs a config from a memory budget
+     * 
+     * @param memoryBytes
+     *            the bytes of records allowed in ram
+     * @param blockBytes
+     *            the size of one I/O block, a multiple of the record size
+     * @param maxFanIn
+     *            the most runs merged at once
+     * @throws IllegalArgumentException
+     *             if the budget cannot hold a block or fan-in is below 2
+     */
+    public SortConfig(long memoryBytes, int blockBytes, int maxFanIn) {
+        this(memoryBytes, blockBytes, maxFanIn, RecordFormat.DEFAULT);
+    }
+
+
+    /**
+     * constructs a config for records of the given format
+     * 
+     * @param memoryBytes
+     *            the bytes of records allowed in ram
+     * @param blockBytes
+     *            the size of one I/O block, a multiple of the record width
+     * @param maxFanIn
+     *            the most runs merged at once
+     * @param format
+     *            the layout of the records
+     * @throws IllegalArgumentException
+     *             if the budget cannot hold a block or fan-in is below 2
+     */
+    public SortConfig(
+        long memoryBytes,
+        int blockBytes,
+        int maxFanIn,
+        RecordFormat format) {
+        if (blockBytes <= 0 || blockBytes % format.getWidth() != 0) {
+            throw new IllegalArgumentException(
+                "block size must be a multiple of the record size");
+        }
+        if (memoryBytes < blockBytes) {
+            throw new IllegalArgumentException(
+                "memory budget must hold at least one block");
+        }
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("fan-in must be at least 2");
+        }
+        this.memoryBytes = memoryBytes;
+        this.blockBytes = blockBytes;
+        this.maxFanIn = maxFanIn;
+        this.format = format;
+    }
+
+
+    /**
+     * @return the bytes of records allowed in ram
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+
+    /**
+     * @return the size of one I/O block
+     */
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+
+
+    /**
+     * @return the most runs merged at once
+     */
+    public int getMaxFanIn() {
+        return maxFanIn;
+    }
+
+
+    /**
+     * @return true if files are read through memory mapped windows
+     */
+    public boolean isMappedIO() {
+        return mappedIO;
+    }
+
+
+    /**
+     * chooses between reading blocks through a FileChannel and
+     * reading them from memory mapped windows of the file
+     * 
+     * @param mappedIO
+     *            true to memory map inputs and runs
+     */
+    public void setMappedIO(boolean mappedIO) {
+        this.mappedIO = mappedIO;
+    }
+
+
+    /**
+     * @return true if plain runs are written and read around the page
+     *         cache
+     */
+    public boolean isDirectIO() {
+        return directIO;
+    }
+
+
+    /**
+     * chooses whether files are read, and plain runs written, with
+     * direct I/O. Runs are written once and read once, so caching them
+     * only pushes out other data; direct I/O keeps them out of the page
+     * cache and makes the sort's throughput depend on the disk alone.
+     * Blocks are read and written as whole units of the file system's
+     * alignment. Files on a file system without direct I/O fall back to
+     * ordinary reads and writes. Takes the place of mapped I/O, read
+     * ahead and write behind.
+     * 
+     * @param directIO
+     *            true to bypass the page cache
+     */
+    public void setDirectIO(boolean directIO) {
+        this.directIO = directIO;
+    }
+
+
+    /**
+     * @return the number of blocks each reader keeps in memory
+     */
+    public int getReadAheadBlocks() {
+        return readAheadBlocks;
+    }
+
+
+    /**
+     * sets how many blocks each reader keeps in memory. With 2 or more,
+     * reads that are not memory mapped fetch the following blocks in the
+     * background while the current one is used. Each run then takes
+     * that many blocks of the budget, so the fan-in shrinks to match.
+     * 
+     * @param readAheadBlocks
+     *            the blocks per reader, 1 to read on demand
+     * @throws IllegalArgumentException
+     *             if readAheadBlocks is below 1
+     */
+    public void setReadAheadBlocks(int readAheadBlocks) {
+        if (readAheadBlocks < 1) {
+            throw new IllegalArgumentException("need at least one block");
+        }
+        this.readAheadBlocks = readAheadBlocks;
+    }
+
+
+    /**
+     * @return the number of blocks each writer keeps in memory
+     */
+    public int getWriteBehindBlocks() {
+        return writeBehindBlocks;
+    }
+
+
+    /**
+     * sets how many blocks each writer keeps in memory. With 2 or more,
+     * full blocks are written on a background thread while the sort
+     * fills the next one, and it only waits when all of them are full.
+     * 
+     * @param writeBehindBlocks
+     *            the blocks per writer, 1 to write in line
+     * @throws IllegalArgumentException
+     *             if writeBehindBlocks is below 1
+     */
+    public void setWriteBehindBlocks(int writeBehindBlocks) {
+        if (writeBehindBlocks < 1) {
+            throw new IllegalArgumentException("need at least one block");
+        }
+        this.writeBehindBlocks = writeBehindBlocks;
+    }
+
+
+    /**
+     * @return true if runs are formed by radix sorting memory loads
+     */
+    public boolean isRadixRuns() {
+        return radixRuns;
+    }
+
+
+    /**
+     * chooses how runs are formed. Replacement selection makes runs about
+     * twice the heap size; radix sorting each memory load makes runs
+     * exactly the heap size but spends far less time comparing.
+     * 
+     * @param radixRuns
+     *            true to radix sort memory loads into runs
+     */
+    public void setRadixRuns(boolean radixRuns) {
+        this.radixRuns = radixRuns;
+    }
+
+
+    /**
+     * @return true if records with equal keys keep their input order
+     */
+    public boolean isStable() {
+        return stable;
+    }
+
+
+    /**
+     * chooses whether records with equal keys keep their input order.
+     * Replacement selection then numbers records as they enter the heap
+     * and breaks ties by that number; merging and radix sorting already
+     * keep ties in input order.
+     * 
+     * @param stable
+     *            true to sort stably
+     */
+    public void setStable(boolean stable) {
+        this.stable = stable;
+    }
+
+
+    /**
+     * @return the codec intermediate runs are written with, or null
+     */
+    public BlockCodec getRunCodec() {
+        return runCodec;
+    }
+
+
+    /**
+     * sets a codec to compress the blocks of intermediate runs, trading
+     * CPU for disk bandwidth. Compressed runs are packed back to back,
+     * so each pass is written by a single writer. The sorted output is
+     * never compressed.
+     * 
+     * @param runCodec
+     *            the codec, or null to write runs as they are
+     */
+    public void setRunCodec(BlockCodec runCodec) {
+        this.runCodec = runCodec;
+    }
+
+
+    /**
+     * @return true if a stopped sort can be run again to carry on
+     */
+    public boolean isRestartable() {
+        return restartable;
+    }
+
+
+    /**
+     * chooses whether ByteFile.sort keeps its input until the sorted
+     * file is complete and syncs every finished pass to disk, so running
+     * it again after a crash carries on from the last pass
+     * 
+     * @param restartable
+     *            true to sort with checkpoints
+     */
+    public void setRestartable(boolean restartable) {
+        this.restartable = restartable;
+    }
+
+
+    /**
+     * @return true if run manifests index the first key of every block
+     */
+    public boolean isBlockIndex() {
+        return blockIndex;
+    }
+
+
+    /**
+     * chooses whether run manifests keep a sparse index of every block's
+     * offset and first key. It costs 16 bytes of memory and manifest per
+     * block, so it is off unless something reads it.
+     * 
+     * @param blockIndex
+     *            true to index the blocks of each run
+     */
+    public void setBlockIndex(boolean blockIndex) {
+        this.blockIndex = blockIndex;
+    }
+
+
+    /**
+     * @return the directories scratch files are spread over, empty for
+     *         the working directory
+     */
+    public List<File> getTempDirs() {
+        return tempDirs;
+    }
+
+
+    /**
+     * sets where scratch files are written. Each file goes in the
+     * directory with the least data in it, so with directories on
+     * several devices the runs of a merge are read from all of them at
+     * once, and each pass reads one disk while writing another.
+     * 
+     * @param tempDirs
+     *            the scratch directories, none for the working directory
+     */
+    public void setTempDirs(File... tempDirs) {
+        this.tempDirs = new ArrayList<>(Arrays.asList(tempDirs));
+    }
+
+
+    /**
+     * @return the number of threads the sort may use
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+
+    /**
+     * sets how many threads the sort may use, the memory budget is
+     * shared between them
+     * 
+     * @param threads
+     *            the number of threads, at least 1
+     * @throws IllegalArgumentException
+     *             if threads is below 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        this.threads = threads;
+    }
+
+
+    /**
+     * @return the layout of the records
+     */
+    public RecordFormat getRecordFormat() {
+        return format;
+    }
+
+
+    /**
+     * @return the number of records in one block
+     */
+    public int getRecordsPerBlock() {
+        return blockBytes / format.getWidth();
+    }
+
+
+    /**
+     * the number of records the replacement selection heap fits in the
+     * budget. Beside each record the arena holds its normalized key and
+     * the heap an index to its slot. A stable sort's arena also holds
+     * the order each record was read in.
+     * 
+     * @return the heap size in records
+     */
+    public int getHeapRecords() {
+        int perRecord = format.getWidth() + Long.BYTES + Integer.BYTES;
+        if (stable) {
+            perRecord += Long.BYTES;
+        }
+        long records = Math.min(memoryBytes, Integer.MAX_VALUE) / perRecord;
+        return (int)Math.max(1, records);
+    }
+
+
+    /**
+     * the number of records a radix sort fits in the budget. Beside each
+     * record it holds a key and an index, and a spare copy of both that
+     * every pass scatters into.
+     * 
+     * @return the most records radix sorted at once
+     */
+    public int getRadixRecords() {
+        int perRecord = format.getWidth() + 2 * (Long.BYTES
+            + Integer.BYTES);
+        long records = Math.min(memoryBytes, Integer.MAX_VALUE) / perRecord;
+        return (int)Math.max(1, records);
+    }
+
+
+    /**
+     * the number of runs merged at once, each run taking
+     * its read ahead blocks of the budget
+     * 
+     * @return the merge fan-in
+     */
+    public int getFanIn() {
+        long runBytes = (long)blockBytes * readAheadBlocks;
+        return (int)Math.max(2, Math.min(maxFanIn, memoryBytes / runBytes));
+    }
+
+}
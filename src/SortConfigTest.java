@@ -0,0 +1,68 @@
+/**
+ * test class for SortConfig
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class SortConfigTest extends student.TestCase {
+
+    /**
+     * sets up for tests
+     */
+    public void setUp() {
+        // nothing to set up.
+    }
+
+
+    /**
+     * tests that the default config matches the old constants
+     */
+    public void testDefaults() {
+        SortConfig config = new SortConfig();
+        assertEquals(ByteFile.BYTES_PER_BLOCK, config.getBlockBytes());
+        assertEquals(ByteFile.RECORDS_PER_BLOCK, config.getRecordsPerBlock());
+        // a 16 byte record, its key and its heap index
+        assertEquals(ByteFile.BYTES_PER_BLOCK * ByteFile.BLOCKS_IN_RAM / 28,
+            config.getHeapRecords());
+        assertEquals(ByteFile.BLOCKS_IN_RAM, config.getFanIn());
+    }
+
+
+    /**
+     * tests values derived from a larger budget
+     */
+    public void testDerived() {
+        SortConfig config = new SortConfig(1 << 20, 4096, 64);
+        assertEquals(256, config.getRecordsPerBlock());
+        assertEquals((1 << 20) / 28, config.getHeapRecords());
+        // a stable sort also numbers each record
+        config.setStable(true);
+        assertEquals((1 << 20) / 36, config.getHeapRecords());
+        // a 16 byte record, its key and index, and their scatter copies
+        assertEquals((1 << 20) / 40, config.getRadixRecords());
+        assertEquals(64, config.getFanIn());
+        assertEquals(4, new SortConfig(4 * 4096, 4096, 64).getFanIn());
+    }
+
+
+    /**
+     * tests that bad settings are rejected
+     */
+    public void testInvalid() {
+        try {
+            new SortConfig(1 << 20, 100, 8);
+            fail("block size not a multiple of the record size");
+        }
+        catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+        try {
+            new SortConfig(1 << 20, 4096, 1);
+            fail("fan-in below 2");
+        }
+        catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Performs the last merge of a sort on demand, handing out records in
+ * key order as they are pulled instead of writing them to a file.
+ * The buffer returned by next() holds exactly one record and is reused,
+ * so its contents are only valid until the following call.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class SortedRecordIterator implements Iterator<ByteBuffer>, Closeable {
+
+    private Run[] group;
+    private LoserTree tree;
+    private ByteBuffer record;
+    private File scratch; // deleted on close, if any
+
+    /**
+     * opens the runs of a file for merging
+     * 
+     * @param runs
+     *            the start of each run followed by the end of the last one,
+     *            no more than the config's fan-in
+     * @param filename
+     *            the file holding the runs
+     * @param config
+     *            the sort settings
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public SortedRecordIterator(
+        List<Long> runs,
+        String filename,
+        SortConfig config)
+        throws IOException {
+        this(runs, filename, config, null);
+    }
+
+
+    /**
+     * opens runs written with a codec for merging
+     * 
+     * @param runs
+     *            the start of each run followed by the end of the last one,
+     *            no more than the config's fan-in
+     * @param filename
+     *            the file holding the runs
+     * @param config
+     *            the sort settings
+     * @param codec
+     *            the codec the runs were written with, or null for none
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public SortedRecordIterator(
+        List<Long> runs,
+        String filename,
+        SortConfig config,
+        BlockCodec codec)
+        throws IOException {
+        RecordFormat format = config.getRecordFormat();
+        record = ByteBuffer.allocate(format.getWidth());
+
+        // only runs with records take part in the tree
+        group = new Run[runs.size() - 1];
+        int count = 0;
+        for (int k = 0; k < group.length; k++) {
+            if (runs.get(k) < runs.get(k + 1)) {
+                group[count++] = new Run(runs.get(k), runs.get(k + 1),
+                    filename, config, codec);
+            }
+        }
+        tree = new LoserTree(group, count, format);
+    }
+
+
+    /**
+     * @return true if any record is left
+     */
+    @Override
+    public boolean hasNext() {
+        return !tree.isEmpty();
+    }
+
+
+    /**
+     * takes the smallest record left
+     * 
+     * @return a buffer holding the record from position to limit
+     * @throws NoSuchElementException
+     *             if every record has been taken
+     * @throws UncheckedIOException
+     *             if a run can not be read
+     */
+    @Override
+    public ByteBuffer next() {
+        if (tree.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        record.clear();
+        tree.getMin().writeRecord(record);
+        record.flip();
+        try {
+            tree.advance();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record;
+    }
+
+
+    /**
+     * adapts the iterator to a sequential stream, which closes the runs
+     * when it is closed
+     * 
+     * @return the records in key order
+     */
+    public Stream<ByteBuffer> stream() {
+        Spliterator<ByteBuffer> split = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+
+    /**
+     * has close delete the file the runs are in, once it is scratch
+     * 
+     * @param file
+     *            the file holding the runs
+     */
+    void deleteOnClose(File file) {
+        scratch = file;
+    }
+
+
+    /**
+     * closes every run, including ones that were not read to the end
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        for (Run run : group) {
+            if (run != null) {
+                run.close();
+            }
+        }
+        if (scratch != null) {
+            scratch.delete();
+        }
+    }
+
+}
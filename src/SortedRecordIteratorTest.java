@@ -0,0 +1,110 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * test class for SortedRecordIterator
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class SortedRecordIteratorTest extends student.TestCase {
+
+    private ByteFile bf;
+
+    /**
+     * sets up a file of random records
+     * 
+     * @throws IOException
+     *             if there is an error with the files
+     */
+    public void setUp() throws IOException {
+        ByteFile.copyFile(new File("sampleInput16.bin"), new File(
+            "iteratorInput.bin"));
+        bf = new ByteFile("iteratorInput.bin", 16);
+        bf.writeRandomRecords();
+    }
+
+
+    /**
+     * removes the input and any manifest left beside it
+     */
+    public void tearDown() {
+        bf.manifestFile().delete();
+        new File("iteratorInput.bin").delete();
+    }
+
+
+    /**
+     * tests that iterating gives every record in key order
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testIterate() throws IOException {
+        SortedRecordIterator it = bf.sortedRecords();
+        assertFalse(bf.manifestFile().exists());
+        double prev = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        while (it.hasNext()) {
+            ByteBuffer record = it.next();
+            assertEquals(ByteFile.BYTES_PER_RECORD, record.remaining());
+            double key = record.getDouble(record.position() + Long.BYTES);
+            assertTrue(prev <= key);
+            prev = key;
+            count++;
+        }
+        it.close();
+        assertEquals(16 * ByteFile.RECORDS_PER_BLOCK, count);
+
+        Exception thrown = null;
+        try {
+            it.next();
+        }
+        catch (NoSuchElementException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * tests the stream adaptor after merge passes in scratch
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testStream() throws IOException {
+        SortConfig config = new SortConfig(2 * ByteFile.BYTES_PER_BLOCK,
+            ByteFile.BYTES_PER_BLOCK, 2);
+        bf = new ByteFile("iteratorInput.bin", 16, config);
+        List<Double> keys;
+        try (Stream<ByteBuffer> records = bf.sortedRecords().stream()) {
+            keys = records.map(r -> r.getDouble(r.position() + Long.BYTES))
+                .collect(Collectors.toList());
+        }
+        assertEquals(16 * ByteFile.RECORDS_PER_BLOCK, keys.size());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1) <= keys.get(i));
+        }
+    }
+
+
+    /**
+     * tests that an iterator over no runs is empty
+     * 
+     * @throws IOException
+     *             if a file error occurs
+     */
+    public void testEmpty() throws IOException {
+        SortedRecordIterator it = new SortedRecordIterator(List.of(0L, 0L),
+            "iteratorInput.bin", new SortConfig());
+        assertFalse(it.hasNext());
+        it.close();
+    }
+
+}
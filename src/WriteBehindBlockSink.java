@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes blocks on a background thread so the producer can keep going.
+ * Full blocks are handed to a writer thread and the producer carries on
+ * in the next free block from a small pool; when every block is waiting
+ * to be written, flush() blocks until the writer frees one.
+ * 
+ * @author Alex Kammann
+ * @version 10.17.26
+ */
+public class WriteBehindBlockSink implements BlockSink {
+
+    private FileChannel channel;
+    private BlockingQueue<ByteBuffer> free; // blocks ready to be filled
+    private ExecutorService writer;
+    private ByteBuffer buffer;
+    private long position; // where the buffer's first byte will be written
+    private volatile IOException failure; // the first failed write
+
+    /**
+     * constructs a sink writing from the given offset
+     * 
+     * @param channel
+     *            the file to write to, left open on close
+     * @param start
+     *            the offset of the first block
+     * @param blockBytes
+     *            the size of one block
+     * @param blocks
+     *            the number of blocks in the pool, at least 2
+     */
+    public WriteBehindBlockSink(
+        FileChannel channel,
+        long start,
+        int blockBytes,
+        int blocks) {
+        this.channel = channel;
+        position = start;
+        free = new ArrayBlockingQueue<>(blocks);
+        for (int i = 1; i < blocks; i++) {
+            free.add(BufferPool.shared().acquire(blockBytes));
+        }
+        buffer = BufferPool.shared().acquire(blockBytes);
+        writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * @return the buffer for the block being filled
+     */
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+
+    /**
+     * queues the filled part of the buffer for writing and waits
+     * for a free block to fill next
+     * 
+     * @throws IOException
+     *             if an earlier write failed
+     */
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+        if (buffer.position() == 0) {
+            return;
+        }
+        ByteBuffer full = buffer;
+        long at = position;
+        full.flip();
+        position += full.remaining();
+        writer.execute(() -> write(full, at));
+        try {
+            buffer = free.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing");
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * writes one block on the writer thread and returns it to the pool
+     * 
+     * @param full
+     *            the block to write
+     * @param at
+     *            the file offset to write it to
+     */
+    private void write(ByteBuffer full, long at) {
+        try {
+            while (full.hasRemaining() && failure == null) {
+                at += channel.write(full, at);
+            }
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        free.add(full);
+    }
+
+
+    /**
+     * @throws IOException
+     *             if a write on the writer thread failed
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+
+    /**
+     * @return the file position the next record will be written to
+     */
+    @Override
+    public long position() {
+        return position + buffer.position();
+    }
+
+
+    /**
+     * writes the last partial block, waits for every queued block to
+     * reach the file and gives the blocks back, the channel is left open
+     * 
+     * @throws IOException
+     *             if a write failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while writing");
+            }
+        }
+
+        // every write is done, so the blocks can go back to the pool
+        for (ByteBuffer done = free.poll(); done != null; done = free
+            .poll()) {
+            BufferPool.shared().release(done);
+        }
+        BufferPool.shared().release(buffer);
+        buffer = ByteBuffer.allocate(0);
+        checkFailure();
+    }
+
+}